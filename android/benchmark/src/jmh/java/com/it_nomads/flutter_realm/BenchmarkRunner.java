@@ -0,0 +1,163 @@
+package com.it_nomads.flutter_realm;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Runs the benchmarks of this package with the GC profiler and compares their throughput (ops/s)
+ * and allocation (bytes per operation) with the baselines file given as argument. A throughput
+ * more than {@link #THROUGHPUT_TOLERANCE} below its baseline, an allocation more than
+ * {@link #ALLOCATION_TOLERANCE} above it, or a benchmark without a baseline fails the run. With
+ * {@code --update} the measured values are stored as the new baselines instead; throughput is
+ * only comparable on the machine and JVM the baselines were recorded with.
+ */
+public class BenchmarkRunner {
+    private static final double THROUGHPUT_TOLERANCE = 0.2;
+    private static final double ALLOCATION_TOLERANCE = 0.1;
+    // One small object, so baselines close to zero don't fail on profiler noise.
+    private static final double ALLOCATION_SLACK_BYTES = 16;
+
+    public static void main(String[] args) throws Exception {
+        boolean update = false;
+        File baselinesFile = null;
+        for (String arg : args) {
+            if (arg.equals("--update")) {
+                update = true;
+            } else {
+                baselinesFile = new File(arg);
+            }
+        }
+        if (baselinesFile == null) {
+            throw new IllegalArgumentException("Usage: BenchmarkRunner [--update] <baselines.json>");
+        }
+
+        Options options = new OptionsBuilder()
+                .include(BenchmarkRunner.class.getPackage().getName() + "\\.\\w+Benchmark\\.")
+                .addProfiler(GCProfiler.class)
+                .forks(1)
+                .warmupIterations(5)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(1))
+                .build();
+        TreeMap<String, double[]> measured = new TreeMap<>();
+        for (RunResult result : new Runner(options).run()) {
+            measured.put(nameOf(result.getParams()), new double[]{
+                    result.getPrimaryResult().getScore(),
+                    result.getSecondaryResults().get("gc.alloc.rate.norm").getScore(),
+            });
+        }
+
+        if (update) {
+            writeBaselines(baselinesFile, measured);
+            System.out.println("Stored " + measured.size() + " baselines in " + baselinesFile);
+            return;
+        }
+        if (!compare(readBaselines(baselinesFile), measured)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Prints each benchmark next to its baseline and returns whether none regressed.
+     */
+    private static boolean compare(JSONObject baselines, Map<String, double[]> measured) {
+        String recordedWith = baselines.optString("recordedWith");
+        if (!recordedWith.equals(environment())) {
+            System.out.println("Baselines were recorded with " + recordedWith + ", this is " + environment());
+        }
+        JSONObject benchmarks = baselines.optJSONObject("benchmarks");
+        boolean passed = true;
+        for (Map.Entry<String, double[]> entry : measured.entrySet()) {
+            String name = entry.getKey();
+            double opsPerSecond = entry.getValue()[0];
+            double bytesPerOp = entry.getValue()[1];
+            JSONObject baseline = benchmarks == null ? null : benchmarks.optJSONObject(name);
+            if (baseline == null) {
+                System.out.println(String.format(Locale.ROOT, "FAIL %s: %.0f ops/s, %.0f B/op, no baseline", name, opsPerSecond, bytesPerOp));
+                passed = false;
+                continue;
+            }
+            double baselineOps = baseline.getDouble("opsPerSecond");
+            double baselineBytes = baseline.getDouble("allocatedBytesPerOp");
+            boolean slower = opsPerSecond < baselineOps * (1 - THROUGHPUT_TOLERANCE);
+            boolean allocates = bytesPerOp > baselineBytes * (1 + ALLOCATION_TOLERANCE) + ALLOCATION_SLACK_BYTES;
+            System.out.println(String.format(Locale.ROOT, "%s %s: %.0f ops/s (baseline %.0f), %.0f B/op (baseline %.0f)",
+                    slower || allocates ? "FAIL" : "ok  ", name, opsPerSecond, baselineOps, bytesPerOp, baselineBytes));
+            passed &= !slower && !allocates;
+        }
+        return passed;
+    }
+
+    private static String nameOf(BenchmarkParams params) {
+        String benchmark = params.getBenchmark();
+        StringBuilder name = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1));
+        for (String key : params.getParamsKeys()) {
+            name.append(' ').append(key).append('=').append(params.getParam(key));
+        }
+        return name.toString();
+    }
+
+    private static String environment() {
+        return System.getProperty("os.name") + " " + System.getProperty("os.arch") + ", "
+                + Runtime.getRuntime().availableProcessors() + " CPUs, "
+                + System.getProperty("java.vm.name") + " " + System.getProperty("java.version");
+    }
+
+    private static JSONObject readBaselines(File file) throws IOException {
+        if (!file.exists()) {
+            return new JSONObject();
+        }
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] bytes = new byte[(int) file.length()];
+            int read = 0;
+            while (read < bytes.length) {
+                read += in.read(bytes, read, bytes.length - read);
+            }
+            return new JSONObject(new String(bytes, "UTF-8"));
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the baselines sorted by name with rounded values, so re-recording them gives a
+     * readable diff.
+     */
+    private static void writeBaselines(File file, Map<String, double[]> measured) throws IOException {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"recordedWith\": ").append(JSONObject.quote(environment())).append(",\n");
+        json.append("  \"benchmarks\": {");
+        String separator = "\n";
+        for (Map.Entry<String, double[]> entry : measured.entrySet()) {
+            json.append(separator).append("    ").append(JSONObject.quote(entry.getKey())).append(": {")
+                    .append("\"opsPerSecond\": ").append(Math.round(entry.getValue()[0])).append(", ")
+                    .append("\"allocatedBytesPerOp\": ").append(Math.round(entry.getValue()[1])).append('}');
+            separator = ",\n";
+        }
+        json.append("\n  }\n}\n");
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(json.toString().getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
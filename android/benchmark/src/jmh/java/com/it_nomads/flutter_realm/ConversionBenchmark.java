@@ -0,0 +1,74 @@
+package com.it_nomads.flutter_realm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Converting recordings to the maps sent over the channel, as "objects", subscriptions and streams
+ * do. One operation is one object.
+ */
+@State(Scope.Benchmark)
+public class ConversionBenchmark {
+    @Param({"none", "inline", "blobStore"})
+    public String thumbnails;
+
+    private File blobStoreFile;
+    private BlobStore blobStore;
+    private ClassSchema.Field[] fields;
+    private Row[] rows;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (thumbnails.equals("blobStore")) {
+            blobStoreFile = File.createTempFile("benchmark", ".blobs");
+            blobStoreFile.delete();
+            blobStore = new BlobStore(blobStoreFile);
+        }
+        fields = Recordings.schema(blobStore).select(FieldProjection.ALL);
+        rows = new Row[Recordings.ROWS];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = Recordings.row(i, thumbnails, blobStore);
+        }
+        if (blobStore != null) {
+            blobStore.sync();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (blobStore != null) {
+            blobStore.close();
+            blobStoreFile.delete();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Recordings.ROWS)
+    public void toMap(Blackhole blackhole) {
+        for (Row row : rows) {
+            blackhole.consume(ClassSchema.toMap(row, fields));
+        }
+    }
+
+    /**
+     * The field readers alone, without building the maps.
+     */
+    @Benchmark
+    @OperationsPerInvocation(Recordings.ROWS)
+    public void readFields(Blackhole blackhole) {
+        for (Row row : rows) {
+            for (ClassSchema.Field field : fields) {
+                blackhole.consume(field.read(row));
+            }
+        }
+    }
+}
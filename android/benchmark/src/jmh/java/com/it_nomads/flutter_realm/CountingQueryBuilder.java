@@ -0,0 +1,250 @@
+package com.it_nomads.flutter_realm;
+
+import java.util.Date;
+
+/**
+ * {@link QueryBuilder} that only tallies what it is given, standing in for a RealmQuery. The
+ * tallies keep the JIT from dropping the conversions a plan does before handing values over.
+ */
+final class CountingQueryBuilder implements QueryBuilder {
+    int conditions;
+    long longs;
+    double doubles;
+    long objects;
+
+    @Override
+    public void and() {
+        conditions++;
+    }
+
+    @Override
+    public void or() {
+        conditions++;
+    }
+
+    @Override
+    public void isNull(String fieldName) {
+        conditions++;
+    }
+
+    @Override
+    public void isNotNull(String fieldName) {
+        conditions++;
+    }
+
+    @Override
+    public void equalTo(String fieldName, Long value) {
+        conditions++;
+        objects += value.hashCode();
+    }
+
+    @Override
+    public void equalTo(String fieldName, Double value) {
+        conditions++;
+        objects += value.hashCode();
+    }
+
+    @Override
+    public void equalTo(String fieldName, Float value) {
+        conditions++;
+        objects += value.hashCode();
+    }
+
+    @Override
+    public void equalTo(String fieldName, Boolean value) {
+        conditions++;
+        objects += value.hashCode();
+    }
+
+    @Override
+    public void equalTo(String fieldName, String value) {
+        conditions++;
+        objects += value.hashCode();
+    }
+
+    @Override
+    public void equalTo(String fieldName, Date value) {
+        conditions++;
+        objects += value.hashCode();
+    }
+
+    @Override
+    public void notEqualTo(String fieldName, Long value) {
+        conditions++;
+        objects += value.hashCode();
+    }
+
+    @Override
+    public void notEqualTo(String fieldName, Double value) {
+        conditions++;
+        objects += value.hashCode();
+    }
+
+    @Override
+    public void notEqualTo(String fieldName, Float value) {
+        conditions++;
+        objects += value.hashCode();
+    }
+
+    @Override
+    public void notEqualTo(String fieldName, Boolean value) {
+        conditions++;
+        objects += value.hashCode();
+    }
+
+    @Override
+    public void notEqualTo(String fieldName, String value) {
+        conditions++;
+        objects += value.hashCode();
+    }
+
+    @Override
+    public void notEqualTo(String fieldName, Date value) {
+        conditions++;
+        objects += value.hashCode();
+    }
+
+    @Override
+    public void greaterThan(String fieldName, long value) {
+        conditions++;
+        longs += value;
+    }
+
+    @Override
+    public void greaterThan(String fieldName, double value) {
+        conditions++;
+        doubles += value;
+    }
+
+    @Override
+    public void greaterThan(String fieldName, float value) {
+        conditions++;
+        doubles += value;
+    }
+
+    @Override
+    public void greaterThan(String fieldName, Date value) {
+        conditions++;
+        objects += value.hashCode();
+    }
+
+    @Override
+    public void greaterThanOrEqualTo(String fieldName, long value) {
+        conditions++;
+        longs += value;
+    }
+
+    @Override
+    public void greaterThanOrEqualTo(String fieldName, double value) {
+        conditions++;
+        doubles += value;
+    }
+
+    @Override
+    public void greaterThanOrEqualTo(String fieldName, float value) {
+        conditions++;
+        doubles += value;
+    }
+
+    @Override
+    public void greaterThanOrEqualTo(String fieldName, Date value) {
+        conditions++;
+        objects += value.hashCode();
+    }
+
+    @Override
+    public void lessThan(String fieldName, long value) {
+        conditions++;
+        longs += value;
+    }
+
+    @Override
+    public void lessThan(String fieldName, double value) {
+        conditions++;
+        doubles += value;
+    }
+
+    @Override
+    public void lessThan(String fieldName, float value) {
+        conditions++;
+        doubles += value;
+    }
+
+    @Override
+    public void lessThan(String fieldName, Date value) {
+        conditions++;
+        objects += value.hashCode();
+    }
+
+    @Override
+    public void lessThanOrEqualTo(String fieldName, long value) {
+        conditions++;
+        longs += value;
+    }
+
+    @Override
+    public void lessThanOrEqualTo(String fieldName, double value) {
+        conditions++;
+        doubles += value;
+    }
+
+    @Override
+    public void lessThanOrEqualTo(String fieldName, float value) {
+        conditions++;
+        doubles += value;
+    }
+
+    @Override
+    public void lessThanOrEqualTo(String fieldName, Date value) {
+        conditions++;
+        objects += value.hashCode();
+    }
+
+    @Override
+    public void between(String fieldName, long low, long high) {
+        conditions++;
+        longs += low + high;
+    }
+
+    @Override
+    public void between(String fieldName, double low, double high) {
+        conditions++;
+        doubles += low + high;
+    }
+
+    @Override
+    public void between(String fieldName, float low, float high) {
+        conditions++;
+        doubles += low + high;
+    }
+
+    @Override
+    public void between(String fieldName, Date low, Date high) {
+        conditions++;
+        objects += low.hashCode() + high.hashCode();
+    }
+
+    @Override
+    public void contains(String fieldName, String value) {
+        conditions++;
+        objects += value.hashCode();
+    }
+
+    @Override
+    public void beginsWith(String fieldName, String value) {
+        conditions++;
+        objects += value.hashCode();
+    }
+
+    @Override
+    public void in(String fieldName, String[] values) {
+        conditions++;
+        objects += values.length;
+    }
+
+    @Override
+    public void in(String fieldName, Long[] values) {
+        conditions++;
+        objects += values.length;
+    }
+}
@@ -0,0 +1,92 @@
+package com.it_nomads.flutter_realm;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * {@link Row} over a map of field values, standing in for a DynamicRealmObject. Like one, it looks
+ * fields up by name and hands out primitives, which the readers box again.
+ */
+final class MapRow implements Row {
+    private final HashMap<String, Object> values;
+
+    MapRow(HashMap<String, Object> values) {
+        this.values = values;
+    }
+
+    @Override
+    public boolean isNull(String name) {
+        return values.get(name) == null;
+    }
+
+    @Override
+    public long getLong(String name) {
+        return ((Number) values.get(name)).longValue();
+    }
+
+    @Override
+    public int getInt(String name) {
+        return ((Number) values.get(name)).intValue();
+    }
+
+    @Override
+    public boolean getBoolean(String name) {
+        return (Boolean) values.get(name);
+    }
+
+    @Override
+    public double getDouble(String name) {
+        return ((Number) values.get(name)).doubleValue();
+    }
+
+    @Override
+    public float getFloat(String name) {
+        return ((Number) values.get(name)).floatValue();
+    }
+
+    @Override
+    public String getString(String name) {
+        return (String) values.get(name);
+    }
+
+    @Override
+    public byte[] getBlob(String name) {
+        return (byte[]) values.get(name);
+    }
+
+    @Override
+    public Date getDate(String name) {
+        return (Date) values.get(name);
+    }
+
+    @Override
+    public <E> List<E> getList(String name, Class<E> elementType) {
+        return (List<E>) values.get(name);
+    }
+
+    @Override
+    public Object get(String name) {
+        return values.get(name);
+    }
+
+    @Override
+    public void set(String name, Object value) {
+        values.put(name, value);
+    }
+
+    @Override
+    public void setNull(String name) {
+        values.put(name, null);
+    }
+
+    @Override
+    public void setLong(String name, long value) {
+        values.put(name, value);
+    }
+
+    @Override
+    public void setInt(String name, int value) {
+        values.put(name, value);
+    }
+}
@@ -0,0 +1,57 @@
+package com.it_nomads.flutter_realm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Looking up the cached {@link QueryPlan} of a predicate and binding its arguments, as every query
+ * method does before Realm runs the query. One operation is one predicate.
+ */
+@State(Scope.Benchmark)
+public class QueryBindingBenchmark {
+    @Param({"equalTo", "range", "in"})
+    public String predicate;
+
+    private final QueryPlanCache cache = new QueryPlanCache();
+    private final CountingQueryBuilder query = new CountingQueryBuilder();
+    private ClassSchema schema;
+    private List<List> items;
+
+    @Setup
+    public void setUp() {
+        schema = Recordings.schema(null);
+        switch (predicate) {
+            case "equalTo":
+                items = Arrays.<List>asList(Arrays.asList("equalTo", "scheduleId", "schedule-1"));
+                break;
+            case "range":
+                items = Arrays.<List>asList(
+                        Arrays.asList("greaterThanOrEqualTo", "createdAt", 1500000000000L),
+                        Arrays.asList("and"),
+                        Arrays.asList("lessThan", "createdAt", 1500086400000L),
+                        Arrays.asList("and"),
+                        Arrays.asList("greaterThan", "duration", 60.0));
+                break;
+            default:
+                List<String> scheduleIds = new ArrayList<>();
+                for (int i = 0; i < 10; i++) {
+                    scheduleIds.add("schedule-" + i);
+                }
+                items = Arrays.<List>asList(Arrays.asList("in", "scheduleId", scheduleIds));
+                break;
+        }
+    }
+
+    @Benchmark
+    public CountingQueryBuilder bind() {
+        cache.get(schema, items).bind(query, items);
+        return query;
+    }
+}
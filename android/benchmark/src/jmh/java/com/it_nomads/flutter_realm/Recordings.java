@@ -0,0 +1,96 @@
+package com.it_nomads.flutter_realm;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+import io.realm.RealmFieldType;
+
+/**
+ * The Recording schema and synthetic recordings shaped like the ones the driver benchmark
+ * ({@code example/test_driver/realm_benchmark.dart}) seeds.
+ */
+final class Recordings {
+    // Objects per benchmark invocation, one page of the driver benchmark.
+    static final int ROWS = 1000;
+    static final int THUMBNAIL_BYTES = 8 * 1024;
+
+    private Recordings() {
+    }
+
+    /**
+     * @param blobStore the store thumbnails are externalized to, or null to keep them inline
+     */
+    static ClassSchema schema(BlobStore blobStore) {
+        return new ClassSchema(Recording.CLASS_NAME, "uuid", new ClassSchema.Field[]{
+                field("uuid", RealmFieldType.STRING, false),
+                field("createdAt", RealmFieldType.INTEGER, false),
+                field("videoWidth", RealmFieldType.INTEGER, false),
+                field("videoHeight", RealmFieldType.INTEGER, false),
+                field("scheduleId", RealmFieldType.STRING, true),
+                field("title", RealmFieldType.STRING, true),
+                field("duration", RealmFieldType.DOUBLE, false),
+                field("thumbnailWidth", RealmFieldType.INTEGER, false),
+                field("thumbnailHeight", RealmFieldType.INTEGER, false),
+                new ClassSchema.Field(BlobStore.FIELD, RealmFieldType.BINARY, true, blobStore),
+                field(BlobStore.OFFSET_FIELD, RealmFieldType.INTEGER, false),
+                field(BlobStore.LENGTH_FIELD, RealmFieldType.INTEGER, false),
+                field("frameRate", RealmFieldType.DOUBLE, false),
+                field("fileSize", RealmFieldType.INTEGER, false),
+                field("digest", RealmFieldType.STRING, true),
+                field("cloudSyncTaskId", RealmFieldType.STRING, true),
+                field("cloudSyncStatus", RealmFieldType.STRING, true),
+                field("cloudStorageProvider", RealmFieldType.STRING, true),
+                field("cloudStorageProviderId", RealmFieldType.STRING, true),
+                field("path", RealmFieldType.STRING, true),
+                field("mimeType", RealmFieldType.STRING, true),
+        });
+    }
+
+    private static ClassSchema.Field field(String name, RealmFieldType type, boolean nullable) {
+        return new ClassSchema.Field(name, type, nullable, null);
+    }
+
+    /**
+     * The fields of recording {@code i} as the channel sends them, thumbnail aside.
+     */
+    static HashMap<String, Object> values(int i) {
+        HashMap<String, Object> values = new HashMap<>();
+        values.put("uuid", "recording-" + i);
+        values.put("createdAt", 1500000000000L + i * 1000L);
+        values.put("videoWidth", 1920);
+        values.put("videoHeight", 1080);
+        values.put("scheduleId", "schedule-" + i % 50);
+        values.put("title", "Recording " + i);
+        values.put("duration", 30.0 + i % 600);
+        values.put("thumbnailWidth", 0);
+        values.put("thumbnailHeight", 0);
+        values.put("frameRate", 30.0);
+        values.put("fileSize", 1024 * 1024 + i);
+        values.put("digest", "digest-" + i);
+        values.put("path", "/recordings/recording-" + i + ".mp4");
+        values.put("mimeType", "video/mp4");
+        return values;
+    }
+
+    /**
+     * Stored recording {@code i}. With {@code thumbnails} "inline" its thumbnail is in the row, with
+     * "blobStore" it is appended to {@code blobStore}, and with "none" it has none.
+     */
+    static MapRow row(int i, String thumbnails, BlobStore blobStore) throws IOException {
+        HashMap<String, Object> values = values(i);
+        values.put(BlobStore.OFFSET_FIELD, 0L);
+        values.put(BlobStore.LENGTH_FIELD, 0);
+        if (!thumbnails.equals("none")) {
+            values.put("thumbnailWidth", 160);
+            values.put("thumbnailHeight", 90);
+            byte[] thumbnail = new byte[THUMBNAIL_BYTES];
+            if (thumbnails.equals("blobStore")) {
+                values.put(BlobStore.OFFSET_FIELD, blobStore.append(thumbnail));
+                values.put(BlobStore.LENGTH_FIELD, thumbnail.length);
+            } else {
+                values.put(BlobStore.FIELD, thumbnail);
+            }
+        }
+        return new MapRow(values);
+    }
+}
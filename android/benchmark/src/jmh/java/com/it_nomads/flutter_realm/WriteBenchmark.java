@@ -0,0 +1,56 @@
+package com.it_nomads.flutter_realm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writing the maps of "create", "update" and "batch" to recordings. "update" changes the title
+ * only, like the driver benchmark's batch; "insert" writes every field of a new recording. One
+ * operation is one object.
+ */
+@State(Scope.Benchmark)
+public class WriteBenchmark {
+    @Param({"update", "insert"})
+    public String map;
+
+    private ClassSchema schema;
+    private Row[] rows;
+    private Map[] maps;
+
+    @Setup
+    public void setUp() throws IOException {
+        schema = Recordings.schema(null);
+        rows = new Row[Recordings.ROWS];
+        maps = new Map[Recordings.ROWS];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = Recordings.row(i, "none", null);
+            if (map.equals("update")) {
+                HashMap<String, Object> update = new HashMap<>();
+                update.put("title", "Updated " + i);
+                maps[i] = update;
+            } else {
+                maps[i] = Recordings.values(i);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Recordings.ROWS)
+    public Row write() throws IOException {
+        Row last = null;
+        for (int i = 0; i < rows.length; i++) {
+            // Without a blob store no field is externalized, so there is no external writer.
+            schema.write(rows[i], maps[i], null);
+            last = rows[i];
+        }
+        return last;
+    }
+}
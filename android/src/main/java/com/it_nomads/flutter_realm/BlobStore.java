@@ -0,0 +1,360 @@
+package com.it_nomads.flutter_realm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.realm.DynamicRealm;
+
+/**
+ * Append-only sidecar file holding Recording thumbnails outside of the realm. Rows reference their
+ * thumbnail by offset and length; reads are served from read-only memory mapped windows of the
+ * file, with the most recently used thumbnails kept in a bounded LRU.
+ *
+ * Appends are not synced one by one: {@link #sync()} runs once right before the transaction that
+ * references them commits. Space of replaced or deleted thumbnails is reclaimed by
+ * {@link #writeCompacted(long[], int[])}, which copies the live thumbnails into a new generation of
+ * the file. Offsets keep growing across generations (each file records the offset it starts at), so
+ * an offset read from an older snapshot is still served from the generation it points into.
+ *
+ * Snapshot reads run on other threads, so they are bracketed by {@link #beginRead()} and
+ * {@link #endRead()}. Generations replaced by a compaction or {@link #clear()}, and the store itself
+ * on {@link #close()}, are only closed once no read is in flight.
+ */
+class BlobStore {
+    static final String FIELD = "thumbnailData";
+    static final String OFFSET_FIELD = "thumbnailOffset";
+    static final String LENGTH_FIELD = "thumbnailLength";
+
+    private static final long CACHE_BYTES = 4 * 1024 * 1024;
+    // Dead space worth a compaction: at least this much, and at least half of the file.
+    static final long RECLAIM_MIN_BYTES = 8 * 1024 * 1024;
+
+    private final File path;
+    // The next generation while it is written, until it replaces path.
+    private final File compacted;
+    private Generation current;
+    // Generations replaced by compactions or clears, newest first, for reads from snapshots taken
+    // before. Closed once no read is in flight.
+    private final List<Generation> retired = new ArrayList<>();
+    private boolean unsynced;
+    private int reads;
+    private boolean closing;
+    private final LinkedHashMap<Long, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    BlobStore(File path) throws IOException {
+        this.path = path;
+        this.compacted = new File(path.getPath() + ".compacting");
+        current = Generation.open(path, 0);
+    }
+
+    static boolean isExternalized(String className, String fieldName) {
+        return Recording.CLASS_NAME.equals(className) && FIELD.equals(fieldName);
+    }
+
+    static boolean isReference(String className, String fieldName) {
+        return Recording.CLASS_NAME.equals(className) && (OFFSET_FIELD.equals(fieldName) || LENGTH_FIELD.equals(fieldName));
+    }
+
+    /**
+     * Appends {@code data} and returns its offset. A row may reference it once {@link #sync()} has
+     * run.
+     */
+    synchronized long append(byte[] data) throws IOException {
+        long offset = current.end();
+        current.write(ByteBuffer.wrap(data));
+        unsynced = true;
+        return offset;
+    }
+
+    /**
+     * Syncs appended data to disk. Called right before committing rows that reference it.
+     */
+    synchronized void sync() throws IOException {
+        if (unsynced) {
+            current.channel.force(false);
+            unsynced = false;
+        }
+    }
+
+    /**
+     * Zero-copy view of a stored blob, valid until the read that asked for it ends.
+     */
+    synchronized ByteBuffer slice(long offset, int length) throws IOException {
+        if (offset >= current.base) {
+            return current.slice(offset, length);
+        }
+        for (Generation generation : retired) {
+            if (offset >= generation.base) {
+                return generation.slice(offset, length);
+            }
+        }
+        throw new IOException("Blob offset " + offset + " is in a discarded generation");
+    }
+
+    /**
+     * Registers a read from another thread. Returns false once the store is closing; the read must
+     * not use the store then.
+     */
+    synchronized boolean beginRead() {
+        if (closing) {
+            return false;
+        }
+        reads++;
+        return true;
+    }
+
+    synchronized void endRead() throws IOException {
+        if (--reads == 0) {
+            closeRetired();
+            if (closing) {
+                current.close();
+            }
+        }
+    }
+
+    /**
+     * Bytes of the current generation, live or not.
+     */
+    synchronized long size() throws IOException {
+        return current.end() - current.base;
+    }
+
+    /**
+     * Whether compacting a store of {@code size} bytes, {@code liveBytes} of them still referenced,
+     * frees enough to be worth copying the live ones.
+     */
+    static boolean worthCompacting(long size, long liveBytes) {
+        long dead = size - liveBytes;
+        return dead >= RECLAIM_MIN_BYTES && dead * 2 >= size;
+    }
+
+    /**
+     * Copy of a stored blob, as needed by the method channel codec.
+     */
+    synchronized byte[] read(long offset, int length) throws IOException {
+        byte[] bytes = cache.get(offset);
+        if (bytes != null && bytes.length == length) {
+            return bytes;
+        }
+        bytes = new byte[length];
+        slice(offset, length).get(bytes);
+
+        cache.put(offset, bytes);
+        cachedBytes += length;
+        Iterator<Map.Entry<Long, byte[]>> eldest = cache.entrySet().iterator();
+        while (cachedBytes > CACHE_BYTES && eldest.hasNext()) {
+            cachedBytes -= eldest.next().getValue().length;
+            eldest.remove();
+        }
+        return bytes;
+    }
+
+    /**
+     * Copies the blobs at {@code offsets} into a new, synced generation and returns their offsets in
+     * it. Readers keep using the current generation until {@link #installCompacted()}, which must
+     * only be called once the rows pointing at the returned offsets are committed.
+     */
+    synchronized long[] writeCompacted(long[] offsets, int[] lengths) throws IOException {
+        compacted.delete();
+        Generation next = Generation.open(compacted, current.end());
+        try {
+            long[] moved = new long[offsets.length];
+            for (int i = 0; i < offsets.length; i++) {
+                moved[i] = next.end();
+                next.write(slice(offsets[i], lengths[i]));
+            }
+            next.channel.force(false);
+            return moved;
+        } finally {
+            next.close();
+        }
+    }
+
+    /**
+     * Replaces the store with the generation written by {@link #writeCompacted(long[], int[])}.
+     */
+    synchronized void installCompacted() throws IOException {
+        if (!compacted.renameTo(path)) {
+            throw new IOException("Could not replace " + path);
+        }
+        retire(current);
+        current = Generation.open(path, 0);
+    }
+
+    synchronized void discardCompacted() {
+        compacted.delete();
+    }
+
+    /**
+     * Finishes a compaction interrupted by a crash or kill: the new generation is installed if the
+     * rows committed before the interruption already point into it, and discarded otherwise.
+     */
+    synchronized void recover(DynamicRealm realm) throws IOException {
+        if (!compacted.exists()) {
+            return;
+        }
+        long base = Generation.readBase(compacted);
+        boolean committed = base >= 0 && realm.getSchema().contains(Recording.CLASS_NAME) && realm.where(Recording.CLASS_NAME)
+                .greaterThan(LENGTH_FIELD, 0).greaterThanOrEqualTo(OFFSET_FIELD, base).count() > 0;
+        if (committed) {
+            installCompacted();
+        } else {
+            discardCompacted();
+        }
+    }
+
+    synchronized void clear() throws IOException {
+        cache.clear();
+        cachedBytes = 0;
+        // Offsets keep growing, so nothing read before the clear can alias a new blob. Reads in
+        // flight keep the unlinked file open until they end.
+        long base = current.end();
+        retire(current);
+        path.delete();
+        current = Generation.open(path, base);
+        unsynced = false;
+    }
+
+    /**
+     * Closes the store, right away or when the last read in flight ends.
+     */
+    synchronized void close() throws IOException {
+        closing = true;
+        cache.clear();
+        cachedBytes = 0;
+        if (reads == 0) {
+            closeRetired();
+            current.close();
+        }
+    }
+
+    private void retire(Generation generation) throws IOException {
+        retired.add(0, generation);
+        if (reads == 0) {
+            closeRetired();
+        }
+    }
+
+    private void closeRetired() throws IOException {
+        for (Generation generation : retired) {
+            generation.close();
+        }
+        retired.clear();
+    }
+
+    /**
+     * One file of the store. It starts with a header holding the offset of its first byte of data;
+     * files written before generations existed have no header and start at offset 0. Reads are
+     * served from mapped windows of {@link #WINDOW_BYTES}, so the file can grow past what a single
+     * mapping can address.
+     */
+    private static class Generation {
+        private static final byte[] MAGIC = "FRBLOBS1".getBytes(Charset.forName("US-ASCII"));
+        private static final int HEADER_BYTES = MAGIC.length + 8;
+        private static final long WINDOW_BYTES = 64 * 1024 * 1024;
+        private static final int MAX_WINDOWS = 4;
+
+        final RandomAccessFile file;
+        final FileChannel channel;
+        // Offset of the first byte of data, and where that byte is in the file.
+        final long base;
+        final long dataStart;
+        private final LinkedHashMap<Long, MappedByteBuffer> windows = new LinkedHashMap<>(MAX_WINDOWS * 2, 0.75f, true);
+
+        private Generation(RandomAccessFile file, long base, long dataStart) {
+            this.file = file;
+            this.channel = file.getChannel();
+            this.base = base;
+            this.dataStart = dataStart;
+        }
+
+        /**
+         * Opens {@code path}, creating it with {@code base} as its first offset if it is empty.
+         */
+        static Generation open(File path, long base) throws IOException {
+            RandomAccessFile file = new RandomAccessFile(path, "rw");
+            if (file.length() == 0) {
+                file.write(MAGIC);
+                file.writeLong(base);
+                return new Generation(file, base, HEADER_BYTES);
+            }
+            long header = readBase(file);
+            return header >= 0 ? new Generation(file, header, HEADER_BYTES) : new Generation(file, 0, 0);
+        }
+
+        /**
+         * First offset recorded in the header of {@code path}, or -1 without one.
+         */
+        static long readBase(File path) throws IOException {
+            RandomAccessFile file = new RandomAccessFile(path, "r");
+            try {
+                return readBase(file);
+            } finally {
+                file.close();
+            }
+        }
+
+        private static long readBase(RandomAccessFile file) throws IOException {
+            if (file.length() < HEADER_BYTES) {
+                return -1;
+            }
+            byte[] magic = new byte[MAGIC.length];
+            file.seek(0);
+            file.readFully(magic);
+            return Arrays.equals(magic, MAGIC) ? file.readLong() : -1;
+        }
+
+        long end() throws IOException {
+            return base + channel.size() - dataStart;
+        }
+
+        void write(ByteBuffer buffer) throws IOException {
+            long position = channel.size();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+
+        ByteBuffer slice(long offset, int length) throws IOException {
+            long position = offset - base + dataStart;
+            long windowStart = position / WINDOW_BYTES * WINDOW_BYTES;
+            if (position + length > windowStart + WINDOW_BYTES) {
+                // Straddles two windows, so it gets a mapping of its own.
+                return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            }
+            MappedByteBuffer window = windows.get(windowStart);
+            if (window == null || position + length > windowStart + window.capacity()) {
+                // Missing, or mapped before the file grew past this blob.
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(WINDOW_BYTES, channel.size() - windowStart));
+                windows.put(windowStart, window);
+                Iterator<Long> eldest = windows.keySet().iterator();
+                if (windows.size() > MAX_WINDOWS) {
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+            ByteBuffer buffer = window.duplicate();
+            int start = (int) (position - windowStart);
+            buffer.position(start);
+            buffer.limit(start + length);
+            return buffer.slice();
+        }
+
+        void close() throws IOException {
+            windows.clear();
+            file.close();
+        }
+    }
+}
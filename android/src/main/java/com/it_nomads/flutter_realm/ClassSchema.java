@@ -0,0 +1,252 @@
+package com.it_nomads.flutter_realm;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.realm.DynamicRealmObject;
+import io.realm.RealmFieldType;
+import io.realm.RealmList;
+import io.realm.RealmObjectSchema;
+
+/**
+ * Field names, types and conversion strategies of one Realm class, resolved once from the
+ * {@link RealmObjectSchema} so converting a row does no schema lookups.
+ */
+class ClassSchema {
+    interface Reader {
+        /**
+         * Returns the field value as sent over the channel, or null if the field is null.
+         */
+        Object read(Row row, String fieldName);
+    }
+
+    interface ExternalWriter {
+        /**
+         * Stores {@code value} of an externalized field outside of {@code row} and points the row
+         * at it.
+         */
+        void write(Row row, Field field, byte[] value) throws IOException;
+    }
+
+    static class Field {
+        final String name;
+        final RealmFieldType type;
+        final boolean nullable;
+        final boolean isList;
+        // Stored in the BlobStore rather than inline in the row.
+        final boolean externalized;
+        final Reader reader;
+
+        Field(String name, RealmFieldType type, boolean nullable, BlobStore blobStore) {
+            this.name = name;
+            this.type = type;
+            this.nullable = nullable;
+            this.isList = type == RealmFieldType.STRING_LIST || type == RealmFieldType.INTEGER_LIST;
+            this.externalized = blobStore != null;
+            this.reader = blobStore != null ? externalReader(blobStore) : readerFor(type, nullable);
+        }
+
+        Object read(Row row) {
+            return reader.read(row, name);
+        }
+
+        Object read(DynamicRealmObject object) {
+            return reader.read(new RealmRow(object), name);
+        }
+
+        /**
+         * {@code value} as a key of this field (Long for INTEGER, String for STRING), or null if it
+         * has a type no such key can have, so it matches no object.
+         */
+        Object asKey(Object value) {
+            switch (type) {
+                case INTEGER:
+                    return value instanceof Integer || value instanceof Long ? ((Number) value).longValue() : null;
+                case STRING:
+                    return value instanceof String ? value : null;
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * Whether writing {@code value}, as sent over the method channel, would change what
+         * {@code object} stores in this field. Numbers compare by value, whatever boxed type the
+         * codec chose.
+         */
+        boolean changes(DynamicRealmObject object, Object value) {
+            Object stored = read(new RealmRow(object));
+            if (stored == null || value == null) {
+                return stored != value;
+            }
+            if (stored instanceof Number && value instanceof Number) {
+                return type == RealmFieldType.FLOAT || type == RealmFieldType.DOUBLE
+                        ? ((Number) stored).doubleValue() != ((Number) value).doubleValue()
+                        : ((Number) stored).longValue() != ((Number) value).longValue();
+            }
+            if (stored instanceof Date && value instanceof Number) {
+                return ((Date) stored).getTime() != ((Number) value).longValue();
+            }
+            if (stored instanceof byte[] && value instanceof byte[]) {
+                return !Arrays.equals((byte[]) stored, (byte[]) value);
+            }
+            return !stored.equals(value);
+        }
+    }
+
+    final String className;
+    final String primaryKey;
+    final Field[] fields;
+    private final Map<String, Field> fieldsByName = new HashMap<>();
+
+    /**
+     * @param blobStore the realm's {@link BlobStore}, or null when thumbnails are stored inline
+     */
+    ClassSchema(RealmObjectSchema schema, BlobStore blobStore) {
+        this(schema.getClassName(), schema.hasPrimaryKey() ? schema.getPrimaryKey() : null, fieldsOf(schema, blobStore));
+    }
+
+    /**
+     * @param allFields every field of the class, blob references included
+     */
+    ClassSchema(String className, String primaryKey, Field[] allFields) {
+        this.className = className;
+        this.primaryKey = primaryKey;
+
+        List<Field> list = new ArrayList<>();
+        for (Field field : allFields) {
+            fieldsByName.put(field.name, field);
+            // Blob references are bookkeeping, not data for the Dart side.
+            if (!BlobStore.isReference(className, field.name)) {
+                list.add(field);
+            }
+        }
+        fields = list.toArray(new Field[0]);
+    }
+
+    private static Field[] fieldsOf(RealmObjectSchema schema, BlobStore blobStore) {
+        String className = schema.getClassName();
+        List<Field> list = new ArrayList<>();
+        for (String fieldName : schema.getFieldNames()) {
+            boolean externalized = blobStore != null && BlobStore.isExternalized(className, fieldName);
+            list.add(new Field(fieldName, schema.getFieldType(fieldName), schema.isNullable(fieldName),
+                    externalized ? blobStore : null));
+        }
+        return list.toArray(new Field[0]);
+    }
+
+    Field field(String fieldName) {
+        return fieldsByName.get(fieldName);
+    }
+
+    /**
+     * Returns the fields selected by {@code projection}, in schema order.
+     */
+    Field[] select(FieldProjection projection) {
+        if (projection == FieldProjection.ALL) {
+            return fields;
+        }
+        List<Field> list = new ArrayList<>(fields.length);
+        for (Field field : fields) {
+            if (projection.includes(field.name)) {
+                list.add(field);
+            }
+        }
+        return list.toArray(new Field[0]);
+    }
+
+    /**
+     * Converts {@code row} to the map sent over the channel, leaving out null values.
+     */
+    static HashMap<String, Object> toMap(Row row, Field[] fields) {
+        HashMap<String, Object> map = new HashMap<>(fields.length * 2);
+
+        for (Field field : fields) {
+            Object value = field.read(row);
+            if (value != null) {
+                map.put(field.name, value);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Writes the fields present in {@code map} to {@code row}. The primary key and "uuid" are
+     * left alone, and externalized fields go to {@code external}.
+     */
+    void write(Row row, Map map, ExternalWriter external) throws IOException {
+        for (Field field : fields) {
+            if (!map.containsKey(field.name) || field.name.equals("uuid") || field.name.equals(primaryKey)) {
+                continue;
+            }
+
+            Object value = map.get(field.name);
+            if (field.externalized) {
+                external.write(row, field, (byte[]) value);
+                continue;
+            }
+            if (field.isList && value instanceof List) {
+                RealmList newValue = new RealmList<>();
+                newValue.addAll((List) value);
+                value = newValue;
+            }
+            row.set(field.name, value);
+        }
+    }
+
+    private static Reader externalReader(final BlobStore blobStore) {
+        return (row, name) -> {
+            byte[] inline = row.getBlob(name);
+            if (inline != null) {
+                return inline;
+            }
+            int length = row.getInt(BlobStore.LENGTH_FIELD);
+            if (length == 0) {
+                return null;
+            }
+            try {
+                return blobStore.read(row.getLong(BlobStore.OFFSET_FIELD), length);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        };
+    }
+
+    private static Reader readerFor(RealmFieldType type, boolean nullable) {
+        switch (type) {
+            case INTEGER:
+                return nullable
+                        ? (row, name) -> row.isNull(name) ? null : row.getLong(name)
+                        : (row, name) -> row.getLong(name);
+            case BOOLEAN:
+                return nullable
+                        ? (row, name) -> row.isNull(name) ? null : row.getBoolean(name)
+                        : (row, name) -> row.getBoolean(name);
+            case DOUBLE:
+                return nullable
+                        ? (row, name) -> row.isNull(name) ? null : row.getDouble(name)
+                        : (row, name) -> row.getDouble(name);
+            case FLOAT:
+                return nullable
+                        ? (row, name) -> row.isNull(name) ? null : row.getFloat(name)
+                        : (row, name) -> row.getFloat(name);
+            case STRING:
+                return (row, name) -> row.getString(name);
+            case BINARY:
+                return (row, name) -> row.getBlob(name);
+            case DATE:
+                return (row, name) -> row.getDate(name);
+            case STRING_LIST:
+                return (row, name) -> row.getList(name, String.class);
+            case INTEGER_LIST:
+                return (row, name) -> row.getList(name, Integer.class);
+            default:
+                return (row, name) -> row.isNull(name) ? null : row.get(name);
+        }
+    }
+}
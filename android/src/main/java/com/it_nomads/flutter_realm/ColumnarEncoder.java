@@ -0,0 +1,305 @@
+package com.it_nomads.flutter_realm;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.realm.DynamicRealmObject;
+import io.realm.RealmResults;
+
+/**
+ * Encodes results column by column into a single little-endian buffer, decoded lazily by
+ * {@code ColumnarResult} on the Dart side. Layout:
+ *
+ * <pre>
+ * int32 magic ("FRC1"), int32 rowCount, int32 columnCount
+ * int32 stringCount, then per string: int32 byteLength, UTF-8 bytes
+ * per column: int32 nameIndex, int32 type, int32 bodyLength, body
+ * body: presence bitmap (1 bit per row, set when not null), then the values:
+ *   INT64, DATE (millis): int64 per row    DOUBLE: float64 per row    FLOAT: float32 per row
+ *   BOOL: uint8 per row                     STRING: int32 string index per row
+ *   BINARY, INT_LIST, STRING_LIST: int32 offsets[rowCount + 1], then the bytes, int64 elements
+ *   or int32 string indexes the offsets point into
+ * </pre>
+ *
+ * Field names and string values share one string table, so repeated values are stored once.
+ */
+class ColumnarEncoder {
+    static final int MAGIC = 0x31435246;
+
+    static final int TYPE_INT64 = 1;
+    static final int TYPE_DOUBLE = 2;
+    static final int TYPE_BOOL = 3;
+    static final int TYPE_STRING = 4;
+    static final int TYPE_BINARY = 5;
+    static final int TYPE_FLOAT = 6;
+    static final int TYPE_DATE = 7;
+    static final int TYPE_INT_LIST = 8;
+    static final int TYPE_STRING_LIST = 9;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Map<String, Integer> stringIndexes = new HashMap<>();
+    private final Buffer strings = new Buffer(1024);
+
+    /**
+     * Encodes the first {@code rowCount} objects of {@code results}.
+     */
+    static byte[] encode(RealmResults<DynamicRealmObject> results, int rowCount, ClassSchema.Field[] fields) {
+        return new ColumnarEncoder().encodeResults(results, rowCount, fields);
+    }
+
+    private byte[] encodeResults(RealmResults<DynamicRealmObject> results, int rowCount, ClassSchema.Field[] fields) {
+        Column[] columns = new Column[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            columns[i] = new Column(fields[i], rowCount);
+        }
+
+        for (int row = 0; row < rowCount; row++) {
+            DynamicRealmObject object = results.get(row);
+            for (Column column : columns) {
+                column.write(object, row);
+            }
+        }
+
+        Buffer out = new Buffer(16 + strings.size);
+        out.putInt(MAGIC);
+        out.putInt(rowCount);
+        out.putInt(columns.length);
+        // Column names are interned while writing the column headers below, so build them first.
+        Buffer body = new Buffer(1024);
+        for (Column column : columns) {
+            column.writeTo(body);
+        }
+        out.putInt(stringIndexes.size());
+        out.putBuffer(strings);
+        out.putBuffer(body);
+        return out.toByteArray();
+    }
+
+    private int intern(String value) {
+        Integer index = stringIndexes.get(value);
+        if (index == null) {
+            index = stringIndexes.size();
+            stringIndexes.put(value, index);
+            byte[] bytes = value.getBytes(UTF_8);
+            strings.putInt(bytes.length);
+            strings.putBytes(bytes);
+        }
+        return index;
+    }
+
+    private static int typeOf(ClassSchema.Field field) {
+        switch (field.type) {
+            case INTEGER:
+                return TYPE_INT64;
+            case DOUBLE:
+                return TYPE_DOUBLE;
+            case BOOLEAN:
+                return TYPE_BOOL;
+            case STRING:
+                return TYPE_STRING;
+            case BINARY:
+                return TYPE_BINARY;
+            case FLOAT:
+                return TYPE_FLOAT;
+            case DATE:
+                return TYPE_DATE;
+            case INTEGER_LIST:
+                return TYPE_INT_LIST;
+            case STRING_LIST:
+                return TYPE_STRING_LIST;
+            default:
+                throw new IllegalArgumentException("Field " + field.name + " of type " + field.type + " can't be encoded as columnar");
+        }
+    }
+
+    private final class Column {
+        final ClassSchema.Field field;
+        final int type;
+        final byte[] presence;
+        final Buffer values;
+        // Payload of variable-length columns; values then holds the offsets into it.
+        final Buffer data;
+
+        Column(ClassSchema.Field field, int rows) {
+            this.field = field;
+            this.type = typeOf(field);
+            this.presence = new byte[(rows + 7) / 8];
+            switch (type) {
+                case TYPE_INT64:
+                case TYPE_DOUBLE:
+                case TYPE_DATE:
+                    values = new Buffer(rows * 8);
+                    data = null;
+                    break;
+                case TYPE_BOOL:
+                    values = new Buffer(rows);
+                    data = null;
+                    break;
+                case TYPE_STRING:
+                case TYPE_FLOAT:
+                    values = new Buffer(rows * 4);
+                    data = null;
+                    break;
+                default:
+                    values = new Buffer((rows + 1) * 4);
+                    values.putInt(0);
+                    data = new Buffer(1024);
+                    break;
+            }
+        }
+
+        void write(DynamicRealmObject object, int row) {
+            String name = field.name;
+            if (type == TYPE_BINARY) {
+                // Read through the field, which also resolves blobs kept in the BlobStore.
+                byte[] bytes = (byte[]) field.read(object);
+                if (bytes == null) {
+                    writeNull();
+                } else {
+                    presence[row >> 3] |= 1 << (row & 7);
+                    data.putBytes(bytes);
+                    values.putInt(data.size);
+                }
+                return;
+            }
+            if (field.nullable && !field.isList && object.isNull(name)) {
+                writeNull();
+                return;
+            }
+            presence[row >> 3] |= 1 << (row & 7);
+            switch (type) {
+                case TYPE_INT64:
+                    values.putLong(object.getLong(name));
+                    break;
+                case TYPE_DOUBLE:
+                    values.putDouble(object.getDouble(name));
+                    break;
+                case TYPE_BOOL:
+                    values.putByte(object.getBoolean(name) ? 1 : 0);
+                    break;
+                case TYPE_STRING:
+                    values.putInt(intern(object.getString(name)));
+                    break;
+                case TYPE_FLOAT:
+                    values.putFloat(object.getFloat(name));
+                    break;
+                case TYPE_DATE:
+                    values.putLong(object.getDate(name).getTime());
+                    break;
+                case TYPE_INT_LIST: {
+                    List<Long> list = object.getList(name, Long.class);
+                    for (Long element : list) {
+                        data.putLong(element == null ? 0 : element);
+                    }
+                    values.putInt(data.size / 8);
+                    break;
+                }
+                case TYPE_STRING_LIST: {
+                    List<String> list = object.getList(name, String.class);
+                    for (String element : list) {
+                        data.putInt(element == null ? -1 : intern(element));
+                    }
+                    values.putInt(data.size / 4);
+                    break;
+                }
+            }
+        }
+
+        private void writeNull() {
+            switch (type) {
+                case TYPE_INT64:
+                case TYPE_DOUBLE:
+                case TYPE_DATE:
+                    values.putLong(0);
+                    break;
+                case TYPE_BOOL:
+                    values.putByte(0);
+                    break;
+                case TYPE_STRING:
+                    values.putInt(-1);
+                    break;
+                case TYPE_FLOAT:
+                    values.putInt(0);
+                    break;
+                case TYPE_BINARY:
+                    values.putInt(data.size);
+                    break;
+                default:
+                    values.putInt(data.size / (type == TYPE_INT_LIST ? 8 : 4));
+                    break;
+            }
+        }
+
+        void writeTo(Buffer out) {
+            out.putInt(intern(field.name));
+            out.putInt(type);
+            out.putInt(presence.length + values.size + (data == null ? 0 : data.size));
+            out.putBytes(presence);
+            out.putBuffer(values);
+            if (data != null) {
+                out.putBuffer(data);
+            }
+        }
+    }
+
+    private static final class Buffer {
+        byte[] bytes;
+        int size;
+
+        Buffer(int capacity) {
+            bytes = new byte[Math.max(capacity, 16)];
+        }
+
+        private void ensure(int count) {
+            if (size + count > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + count));
+            }
+        }
+
+        void putByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void putInt(int value) {
+            ensure(4);
+            bytes[size++] = (byte) value;
+            bytes[size++] = (byte) (value >> 8);
+            bytes[size++] = (byte) (value >> 16);
+            bytes[size++] = (byte) (value >> 24);
+        }
+
+        void putLong(long value) {
+            putInt((int) value);
+            putInt((int) (value >> 32));
+        }
+
+        void putDouble(double value) {
+            putLong(Double.doubleToRawLongBits(value));
+        }
+
+        void putFloat(float value) {
+            putInt(Float.floatToRawIntBits(value));
+        }
+
+        void putBytes(byte[] value) {
+            ensure(value.length);
+            System.arraycopy(value, 0, bytes, size, value.length);
+            size += value.length;
+        }
+
+        void putBuffer(Buffer other) {
+            ensure(other.size);
+            System.arraycopy(other.bytes, 0, bytes, size, other.size);
+            size += other.size;
+        }
+
+        byte[] toByteArray() {
+            return size == bytes.length ? bytes : Arrays.copyOf(bytes, size);
+        }
+    }
+}
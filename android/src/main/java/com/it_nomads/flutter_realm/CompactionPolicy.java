@@ -0,0 +1,56 @@
+package com.it_nomads.flutter_realm;
+
+import java.util.Map;
+
+import io.realm.CompactOnLaunchCallback;
+
+/**
+ * Compacts the realm file when it is opened and either {@code minFreeRatio} of it is free space
+ * or the free space exceeds {@code minFreeBytes}. Files smaller than {@code minFileBytes} are left
+ * alone. Also remembers the sizes it was asked about, for the "fileStats" method.
+ */
+class CompactionPolicy implements CompactOnLaunchCallback {
+    private final double minFreeRatio;
+    private final long minFreeBytes;
+    private final long minFileBytes;
+
+    // Sizes seen when the realm was opened; -1 until then.
+    volatile long launchTotalBytes = -1;
+    volatile long launchUsedBytes = -1;
+    volatile boolean compactedOnLaunch;
+
+    CompactionPolicy(double minFreeRatio, long minFreeBytes, long minFileBytes) {
+        this.minFreeRatio = minFreeRatio;
+        this.minFreeBytes = minFreeBytes;
+        this.minFileBytes = minFileBytes;
+    }
+
+    /**
+     * Reads the "compactOnLaunch" initialize argument, or returns null when it is absent.
+     */
+    static CompactionPolicy fromArguments(Map arguments) {
+        Map policy = (Map) arguments.get("compactOnLaunch");
+        if (policy == null) {
+            return null;
+        }
+        Number minFreeRatio = (Number) policy.get("minFreeRatio");
+        Number minFreeBytes = (Number) policy.get("minFreeBytes");
+        Number minFileBytes = (Number) policy.get("minFileBytes");
+        return new CompactionPolicy(
+                minFreeRatio == null ? 0.5 : minFreeRatio.doubleValue(),
+                minFreeBytes == null ? Long.MAX_VALUE : minFreeBytes.longValue(),
+                minFileBytes == null ? 0 : minFileBytes.longValue());
+    }
+
+    @Override
+    public boolean shouldCompact(long totalBytes, long usedBytes) {
+        launchTotalBytes = totalBytes;
+        launchUsedBytes = usedBytes;
+        long freeBytes = totalBytes - usedBytes;
+        boolean compact = totalBytes >= minFileBytes
+                && totalBytes > 0
+                && ((double) freeBytes / totalBytes >= minFreeRatio || freeBytes >= minFreeBytes);
+        compactedOnLaunch = compact;
+        return compact;
+    }
+}
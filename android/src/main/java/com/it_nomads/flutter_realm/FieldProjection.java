@@ -0,0 +1,40 @@
+package com.it_nomads.flutter_realm;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Selects which fields {@link FlutterRealm} copies into object maps. Built from the optional
+ * "fields" (include only) and "excludeFields" arguments of a method call.
+ */
+class FieldProjection {
+    static final FieldProjection ALL = new FieldProjection(null, null);
+
+    private final Set<String> included;
+    private final Set<String> excluded;
+
+    private FieldProjection(Set<String> included, Set<String> excluded) {
+        this.included = included;
+        this.excluded = excluded;
+    }
+
+    static FieldProjection fromArguments(Map arguments) {
+        List<String> fields = (List<String>) arguments.get("fields");
+        List<String> excludeFields = (List<String>) arguments.get("excludeFields");
+        if (fields == null && excludeFields == null) {
+            return ALL;
+        }
+        return new FieldProjection(
+                fields == null ? null : new HashSet<>(fields),
+                excludeFields == null ? null : new HashSet<>(excludeFields));
+    }
+
+    boolean includes(String fieldName) {
+        if (included != null && !included.contains(fieldName)) {
+            return false;
+        }
+        return excluded == null || !excluded.contains(fieldName);
+    }
+}
@@ -0,0 +1,149 @@
+package com.it_nomads.flutter_realm;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import io.realm.DynamicRealm;
+import io.realm.DynamicRealmObject;
+import io.realm.RealmConfiguration;
+
+/**
+ * Removes recording files in the background, outside of write transactions.
+ *
+ * Paths are appended (and synced) to a journal next to the realm file before their rows are
+ * deleted, and the journal is drained on a background thread once the transaction has committed or
+ * been cancelled ({@link #settled()}). The journal is not picked up for draining while any such
+ * transaction is still open, so every path that is drained belongs to a settled transaction.
+ * Anything left over from a crash or kill is drained again on the next initialize. A path that is
+ * still referenced by a Recording (because its transaction was cancelled or never committed) is
+ * dropped from the journal without deleting the file.
+ */
+class FileDeletionJournal {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int QUERY_CHUNK_SIZE = 500;
+
+    private final RealmConfiguration configuration;
+    private final File journal;
+    // The journal is renamed to this while it is drained, so new paths start a fresh journal.
+    private final File processing;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    // Appends whose transaction has not settled yet. Guarded by this.
+    private int unsettled;
+
+    FileDeletionJournal(RealmConfiguration configuration) {
+        this.configuration = configuration;
+        File directory = configuration.getRealmDirectory();
+        String name = configuration.getRealmFileName();
+        journal = new File(directory, name + ".deletions");
+        processing = new File(directory, name + ".deletions.processing");
+    }
+
+    synchronized void append(List<String> paths) throws IOException {
+        FileOutputStream out = new FileOutputStream(journal, true);
+        try {
+            Writer writer = new OutputStreamWriter(out, UTF_8);
+            for (String path : paths) {
+                if (path != null) {
+                    writer.write(path);
+                    writer.write('\n');
+                }
+            }
+            writer.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        unsettled++;
+    }
+
+    /**
+     * Called once for every successful {@link #append(List)} after the transaction deleting those
+     * rows has committed or been cancelled; drains the journal once no transaction is open.
+     */
+    void settled() {
+        synchronized (this) {
+            unsettled--;
+        }
+        deleteInBackground();
+    }
+
+    void deleteInBackground() {
+        executor.execute(this::drain);
+    }
+
+    /**
+     * Lets pending deletions finish, then stops the background thread.
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                synchronized (this) {
+                    // The journal may hold paths of an open transaction; settled() drains it later.
+                    if (!processing.exists() && (unsettled > 0 || !journal.exists() || !journal.renameTo(processing))) {
+                        return;
+                    }
+                }
+                deleteUnreferenced(readPaths(processing));
+                processing.delete();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private List<String> readPaths(File file) throws IOException {
+        ArrayList<String> paths = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    paths.add(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return paths;
+    }
+
+    private void deleteUnreferenced(List<String> paths) {
+        Set<String> referenced = new HashSet<>();
+        DynamicRealm realm = DynamicRealm.getInstance(configuration);
+        try {
+            if (realm.getSchema().contains(Recording.CLASS_NAME)) {
+                for (int start = 0; start < paths.size(); start += QUERY_CHUNK_SIZE) {
+                    List<String> chunk = paths.subList(start, Math.min(paths.size(), start + QUERY_CHUNK_SIZE));
+                    for (DynamicRealmObject object : realm.where(Recording.CLASS_NAME).in("path", chunk.toArray(new String[0])).findAll()) {
+                        referenced.add(object.getString("path"));
+                    }
+                }
+            }
+        } finally {
+            realm.close();
+        }
+
+        for (String path : paths) {
+            if (!referenced.contains(path)) {
+                new File(path).delete();
+            }
+        }
+    }
+}
@@ -1,15 +1,32 @@
 package com.it_nomads.flutter_realm;
 
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Base64;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
 import io.realm.DynamicRealm;
@@ -19,22 +36,65 @@ import io.realm.OrderedRealmCollectionChangeListener;
 import io.realm.Realm;
 import io.realm.RealmConfiguration;
 import io.realm.RealmFieldType;
-import io.realm.RealmList;
 import io.realm.RealmQuery;
 import io.realm.RealmResults;
 import io.realm.Sort;
 
 class FlutterRealm {
+    static final String STREAM_CHANNEL = "plugins.it_nomads.com/flutter_realm/stream";
+
+    // Read methods served from a frozen snapshot on READ_POOL instead of the realm thread.
+    private static final Set<String> SNAPSHOT_READS = new HashSet<>(Arrays.asList("getRecordingIdsForScheduleIds",
+            "getRecordingIdsForSchedule", "getScheduleIdsWithRecordings", "getAllScheduleIds", "allObjects", "objects", "object", "objectsByPrimaryKeys", "search"));
+    private static final ExecutorService READ_POOL = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+
     private final String realmId;
     private DynamicRealm realm;
-    private HashMap<String, RealmResults> subscriptions = new HashMap<>();
+    // Typed instance kept open next to the DynamicRealm so the schema stays initialized.
+    private Realm typedRealm;
+    private HashMap<String, Subscription> subscriptions = new HashMap<>();
+    // Subscriptions by query signature, so identical queries share one RealmResults and one conversion.
+    private HashMap<String, Subscription> sharedSubscriptions = new HashMap<>();
     private final MethodChannel channel;
+    private BinaryMessenger messenger;
+    private final HashMap<String, ResultStream> streams = new HashMap<>();
     private Handler handler = new Handler(Looper.getMainLooper());
-    FlutterRealm(MethodChannel channel, String realmId, Map arguments) {
+    private RealmConfiguration configuration;
+    private boolean inMemory;
+    private CompactionPolicy compactionPolicy;
+    private final SchemaCache schemaCache = new SchemaCache();
+    private final QueryPlanCache queryPlans = new QueryPlanCache();
+    private FileDeletionJournal deletionJournal;
+    private boolean blobStoreEnabled;
+    private BlobStore blobStore;
+    // Only set when the realm runs on its own worker thread (see "workerThread" in initialize).
+    private HandlerThread workerThread;
+    private Handler realmHandler;
+    // Set by close(), reset() or a failed reopen after compaction; calls arriving afterwards are
+    // rejected instead of queued on a stopped thread or served by a closed realm.
+    private volatile boolean closed;
+    private Metrics metrics = new Metrics(false, false);
+    private long transactionStartedAt;
+    // Write-behind for updateObject, enabled by "writeBufferMillis" in initialize.
+    private long writeBufferMillis;
+    private final WriteBuffer writeBuffer = new WriteBuffer();
+    // Buffered updates that failed since the last "flush" call.
+    private final List<Map> writeErrors = new ArrayList<>();
+    private final ScheduleSummaries scheduleSummaries = new ScheduleSummaries();
+    private Runnable pendingWriteFlush;
+    // Set when a write leaves dead space in the blob store, until reclaimBlobStore() looks at it.
+    private boolean blobSpaceFreed;
+    private Runnable pendingBlobReclaim;
+    private final ClassSchema.ExternalWriter externalWriter = this::storeExternal;
+
+    FlutterRealm(MethodChannel channel, BinaryMessenger messenger, String realmId, Map arguments) {
         this.channel = channel;
+        this.messenger = messenger;
         this.realmId = realmId;
 
-        RealmConfiguration.Builder builder = new RealmConfiguration.Builder().modules(Realm.getDefaultModule());
+        RealmConfiguration.Builder builder = new RealmConfiguration.Builder().modules(Realm.getDefaultModule())
+                .schemaVersion(FlutterRealmMigration.SCHEMA_VERSION)
+                .migration(new FlutterRealmMigration());
 
         String inMemoryIdentifier = (String) arguments.get("inMemoryIdentifier");
         byte[] encryptionKey = (byte[]) arguments.get("encryptionKey");
@@ -42,47 +102,145 @@ class FlutterRealm {
             builder.encryptionKey(encryptionKey);
         }
         if (inMemoryIdentifier == null) {
+            compactionPolicy = CompactionPolicy.fromArguments(arguments);
+            if (compactionPolicy != null) {
+                builder.compactOnLaunch(compactionPolicy);
+            }
         } else {
             builder.inMemory().name(inMemoryIdentifier);
+            inMemory = true;
         }
-        RealmConfiguration config = builder.build();
+        configuration = builder.build();
+        blobStoreEnabled = Boolean.TRUE.equals(arguments.get("blobStore"));
+        Number writeBuffer = (Number) arguments.get("writeBufferMillis");
+        writeBufferMillis = writeBuffer == null ? 0 : writeBuffer.longValue();
+        metrics = new Metrics(Boolean.TRUE.equals(arguments.get("metrics")), Boolean.TRUE.equals(arguments.get("trace")));
 
-        Realm.getInstance(config);
-        realm = DynamicRealm.getInstance(config);
+        if (Boolean.TRUE.equals(arguments.get("workerThread"))) {
+            workerThread = new HandlerThread("FlutterRealm:" + realmId);
+            workerThread.start();
+            realmHandler = new Handler(workerThread.getLooper());
+        }
     }
 
     FlutterRealm(MethodChannel channel, String realmId, RealmConfiguration configuration) {
         this.channel = channel;
         this.realmId = realmId;
+        this.configuration = configuration;
         Realm.getInstance(configuration);
         realm = DynamicRealm.getInstance(configuration);
+        deletionJournal = new FileDeletionJournal(configuration);
     }
 
     FlutterRealm(MethodChannel channel, String realmId, Realm realm) {
         this.channel = channel;
         this.realmId = realmId;
+        this.configuration = realm.getConfiguration();
         this.realm =
                 DynamicRealm.getInstance(realm.getConfiguration());
+        this.deletionJournal = new FileDeletionJournal(configuration);
+
+    }
 
+    /**
+     * Opens the realm on the thread that will serve all of its calls. Realm instances are thread
+     * confined, so in worker mode the DynamicRealm is created on the worker thread itself.
+     */
+    void open(final MethodChannel.Result result) {
+        runOnRealmThread(() -> {
+            try {
+                typedRealm = Realm.getInstance(configuration);
+                realm = DynamicRealm.getInstance(configuration);
+                deletionJournal = new FileDeletionJournal(configuration);
+                // Finish deletions interrupted by a crash or kill in a previous session.
+                deletionJournal.deleteInBackground();
+                if (blobStoreEnabled) {
+                    blobStore = new BlobStore(blobStoreFile());
+                    blobStore.recover(realm);
+                    schemaCache.setBlobStore(blobStore);
+                    reclaimBlobStore();
+                }
+                replyOnMainThread(result).success(null);
+            } catch (Exception e) {
+                e.printStackTrace();
+                replyOnMainThread(result).error(e.getMessage(), e.getMessage(), e.getStackTrace().toString());
+            }
+        });
     }
 
-    void onMethodCall(MethodCall call, final MethodChannel.Result result) {
+    void onMethodCall(final MethodCall call, final MethodChannel.Result result) {
+        if (closed) {
+            result.error("Realm closed", call.method, null);
+            return;
+        }
+        runOnRealmThread(() -> {
+            if (SNAPSHOT_READS.contains(call.method)) {
+                // Timed on the read pool.
+                handleMethodCall(call, replyOnMainThread(result));
+                return;
+            }
+            long started = metrics.begin(call.method);
+            try {
+                handleMethodCall(call, replyOnMainThread(result));
+            } finally {
+                metrics.endMethod(call.method, started);
+            }
+        });
+    }
+
+    private Handler realmThreadHandler() {
+        return realmHandler != null ? realmHandler : handler;
+    }
+
+    private void runOnRealmThread(Runnable runnable) {
+        if (realmHandler == null) {
+            runnable.run();
+        } else {
+            realmHandler.post(runnable);
+        }
+    }
+
+    private MethodChannel.Result replyOnMainThread(MethodChannel.Result result) {
+        if (realmHandler == null) {
+            return result;
+        }
+        return new MainThreadResult(result, handler);
+    }
+
+    private void invokeOnMainThread(final String method, final Object arguments) {
+        runOnMainThread(() -> channel.invokeMethod(method, arguments));
+    }
+
+    private void runOnMainThread(Runnable runnable) {
+        if (realmHandler == null) {
+            runnable.run();
+        } else {
+            handler.post(runnable);
+        }
+    }
+
+    private void handleMethodCall(MethodCall call, final MethodChannel.Result result) {
+        if (realm == null) {
+            result.error("Realm not opened", call.method, null);
+            return;
+        }
+        if (!writeBuffer.isEmpty() && !call.method.equals("updateObject")) {
+            // Every other call sees buffered updates as if they had been written right away. Failed
+            // updates are reported through "onWriteErrors" and the next "flush", not to this call.
+            flushWrites();
+        }
+        if (SNAPSHOT_READS.contains(call.method)) {
+            readOnSnapshot(call, result);
+            return;
+        }
 
         try {
             Map arguments = (Map) call.arguments;
             switch (call.method) {
                 case "createObject": {
-                    String className = (String) arguments.get("$");
-                    final String uuid = (String) arguments.get("uuid");
-
-
-                    assert className != null;
-                    assert uuid != null;
-
-                    realm.beginTransaction();
-                    DynamicRealmObject object = realm.createObject(className, uuid);
-                    mapToObject(object, arguments);
-                    realm.commitTransaction();
+                    beginTransaction();
+                    insertObject(arguments);
+                    commitTransaction();
 
                     result.success(null);
                     break;
@@ -93,160 +251,74 @@ class FlutterRealm {
 
 
                     DynamicRealmObject object = find(className, primaryKey);
-                    realm.beginTransaction();
-                    object.deleteFromRealm();
-                    realm.commitTransaction();
+                    beginTransaction();
+                    removeObject(object);
+                    commitTransaction();
 
                     result.success(null);
                     break;
                 }
+                case "batch": {
+                    List<Map> operations = (List<Map>) arguments.get("operations");
+                    if (operations == null) {
+                        throw new Exception("No argument: operations");
+                    }
+                    ArrayList<Object> results = new ArrayList<>(operations.size());
+
+                    beginTransaction();
+                    for (int i = 0; i < operations.size(); i++) {
+                        results.add(applyOperation(i, operations.get(i)));
+                    }
+                    commitTransaction();
+
+                    result.success(Collections.unmodifiableList(results));
+                    break;
+                }
                 case "deleteRecording": {
                     String scheduleId = (String) arguments.get("scheduleId");
                     Object primaryKey = arguments.get("primaryKey");
-                    realm.executeTransaction(new DynamicRealm.Transaction() {
-                        @Override
-                        public void execute(DynamicRealm realm) {
-                            DynamicRealmObject object = find("Recording", primaryKey);
-                            if (object == null) {
-                                return;
+                    final DynamicRealmObject object = find(Recording.CLASS_NAME, primaryKey);
+                    if (object != null) {
+                        // Journal the file before its row goes away, so a crash can't orphan it.
+                        deletionJournal.append(Collections.singletonList(object.getString("path")));
+                        try {
+                            beginTransaction();
+                            removeObject(object);
+                            commitTransaction();
+                        } finally {
+                            if (realm.isInTransaction()) {
+                                cancelTransaction();
                             }
-                            String path = object.get("path");
-                            object.deleteFromRealm();
-                            File file = new File(path);
-                            file.delete();
-                            handler.post(() -> {
-                                result.success(realm.where("Recording").equalTo("scheduleId", scheduleId).count());
-                            });
+                            deletionJournal.settled();
                         }
-
-                    });
+                    }
+                    result.success(ScheduleSummaries.count(realm, scheduleId));
                     break;
                 }
                 case "deleteAllRecordings": {
                     String scheduleId = (String) arguments.get("scheduleId");
                     final List<String> primaryKeys = (List<String>)arguments.get("primaryKeys");
 
-                    realm.executeTransaction(new DynamicRealm.Transaction() {
-                        @Override
-                        public void execute(DynamicRealm realm) {
-                            RealmResults<DynamicRealmObject> objects = realm.where("Recording").in("uuid", primaryKeys.toArray(new String[0])).findAll();
-                            ArrayList<String> filesToDelete = new ArrayList<>();
-                            for (DynamicRealmObject object : objects) {
-                                filesToDelete.add(object.get("path"));
-                            }
-                            objects.deleteAllFromRealm();
-                            for (String path : filesToDelete) {
-                               File file = new File(path);
-                               file.delete();
-                            }
-                            handler.post(() -> {
-                                result.success(realm.where("Recording").equalTo("scheduleId", scheduleId).count());
-                            });
-                        }
-
-                    });
-                    break;
-                }
-                case "getRecordingIdsForScheduleIds": {
-                    List<String> scheduleIds = (List<String>)arguments.get("scheduleIds");
-                    String orderBy = (String) arguments.get("orderBy");
-                    Boolean ascending = (Boolean) arguments.get("ascending");
-                    RealmQuery query = realm.where("Recording").in("scheduleId", scheduleIds.toArray(new String[0]));
-                    if (orderBy != null) {
-                        if (ascending != null) {
-                            query = query.sort(orderBy, ascending ? Sort.ASCENDING : Sort.DESCENDING);
-                        }
-                    }
-                    RealmResults<DynamicRealmObject> objects = query.findAll();
-                    ArrayList list = new ArrayList<>();
+                    final RealmResults<DynamicRealmObject> objects = realm.where(Recording.CLASS_NAME).in("uuid", primaryKeys.toArray(new String[0])).findAll();
+                    ArrayList<String> filesToDelete = new ArrayList<>();
                     for (DynamicRealmObject object : objects) {
-                        HashMap map = new HashMap();
-                        map.put("uuid", object.get("uuid"));
-                        map.put("scheduleId", object.get("scheduleId"));
-                        list.add(map);
+                        filesToDelete.add(object.getString("path"));
                     }
-                    HashMap map = new HashMap();
-                    map.put("results", Collections.unmodifiableList(list));
-                    map.put("count", objects.size());
-                    result.success(map);
-                    break;
-                }
-                case "getRecordingIdsForSchedule": {
-                    String scheduleId = (String)arguments.get("scheduleId");
-                    String orderBy = (String) arguments.get("orderBy");
-                    Boolean ascending = (Boolean) arguments.get("ascending");
-                    RealmQuery query = realm.where("Recording").equalTo("scheduleId", scheduleId);
-                    if (orderBy != null) {
-                        if (ascending != null) {
-                            query = query.sort(orderBy, ascending ? Sort.ASCENDING : Sort.DESCENDING);
+                    deletionJournal.append(filesToDelete);
+                    try {
+                        beginTransaction();
+                        // One by one through removeObject, so derived data is kept up to date.
+                        for (DynamicRealmObject object : objects.createSnapshot()) {
+                            removeObject(object);
                         }
-                    }
-                    RealmResults<DynamicRealmObject> objects = query.findAll();
-                    ArrayList list = new ArrayList<>();
-                    for (DynamicRealmObject object : objects) {
-                        list.add(object.get("uuid"));
-                    }
-                    HashMap map = new HashMap();
-                    map.put("results", Collections.unmodifiableList(list));
-                    map.put("count", objects.size());
-                    result.success(map);
-                    break;
-                }
-                case "getScheduleIdsWithRecordings": {
-                    List<String> scheduleIds = (List<String>)arguments.get("scheduleIds");
-                    String orderBy = (String) arguments.get("orderBy");
-                    Boolean ascending = (Boolean) arguments.get("ascending");
-                    RealmQuery query = realm.where("Recording").in("scheduleId", scheduleIds.toArray(new String[0])).distinct("scheduleId");
-                    if (orderBy != null) {
-                        if (ascending != null) {
-                            query = query.sort(orderBy, ascending ? Sort.ASCENDING : Sort.DESCENDING);
-                        }
-                    }
-                    RealmResults<DynamicRealmObject> objects = query.findAll();
-                    ArrayList list = new ArrayList<>();
-                    for (DynamicRealmObject object : objects) {
-                        list.add(object.get("scheduleId"));
-                    }
-                    HashMap map = new HashMap();
-                    map.put("results", Collections.unmodifiableList(list));
-                    map.put("count", objects.size());
-                    result.success(map);
-                    break;
-                }
-                case "getAllScheduleIds": {
-                    int limit = (Integer) arguments.get("limit");
-                    String orderBy = (String) arguments.get("orderBy");
-                    Boolean ascending = (Boolean) arguments.get("ascending");
-                    RealmQuery query = realm.where("Recording").distinct("scheduleId");
-                    RealmResults<DynamicRealmObject> objects = query.findAll();
-                    int count = objects.size();
-                    if (orderBy != null) {
-                        if (ascending != null) {
-                            query = query.sort(orderBy, ascending ? Sort.ASCENDING : Sort.DESCENDING);
+                        commitTransaction();
+                    } finally {
+                        if (realm.isInTransaction()) {
+                            cancelTransaction();
                         }
+                        deletionJournal.settled();
                     }
-                    if (limit >= 0) {
-                        query = query.limit(limit);
-                    }
-                    objects = query.findAll();
-                    ArrayList list = new ArrayList<>();
-                    for (DynamicRealmObject object : objects) {
-                        list.add(object.get("scheduleId"));
-                    }
-                    HashMap map = new HashMap();
-                    map.put("results", Collections.unmodifiableList(list));
-                    map.put("count", count);
-                    result.success(map);
-                    break;
-                }
-                case "allObjects": {
-                    String className = (String) arguments.get("$");
-                    RealmResults<DynamicRealmObject> results = realm.where(className).findAll();
-                    List list = convert(results);
-                    HashMap map = new HashMap();
-                    map.put("results", list);
-                    map.put("count", results.size());
-                    result.success(map);
+                    result.success(ScheduleSummaries.count(realm, scheduleId));
                     break;
                 }
                 case "updateObject": {
@@ -262,11 +334,17 @@ class FlutterRealm {
                         return;
                     }
 
-                    realm.beginTransaction();
-                    mapToObject(object, value);
-                    realm.commitTransaction();
+                    if (writeBufferMillis > 0) {
+                        bufferWrite(className, primaryKey, value);
+                        result.success(null);
+                        break;
+                    }
+
+                    beginTransaction();
+                    updateObject(object, value);
+                    commitTransaction();
 
-                    result.success(objectToMap(object));
+                    result.success(objectToMap(object, FieldProjection.ALL));
                     break;
                 }
                 case "subscribeAllObjects": {
@@ -274,14 +352,20 @@ class FlutterRealm {
                     String orderBy = (String) arguments.get("orderBy");
                     Boolean ascending = (Boolean) arguments.get("ascending");
                     String subscriptionId = (String) arguments.get("subscriptionId");
+                    boolean deltas = Boolean.TRUE.equals(arguments.get("deltas"));
+                    Number throttle = (Number) arguments.get("throttle");
+                    String signature = subscriptionSignature(call.method, arguments);
 
-                    RealmResults<DynamicRealmObject> subscription = realm.where(className).findAllAsync();
-                    if (orderBy != null) {
-                        if (ascending != null) {
-                            subscription = subscription.sort(orderBy, ascending ? Sort.ASCENDING : Sort.DESCENDING);
+                    if (!joinSubscription(subscriptionId, signature)) {
+                        RealmResults<DynamicRealmObject> subscription = realm.where(className).findAllAsync();
+                        if (orderBy != null) {
+                            if (ascending != null) {
+                                subscription = subscription.sort(orderBy, ascending ? Sort.ASCENDING : Sort.DESCENDING);
+                            }
                         }
+                        subscribe(subscriptionId, signature, className, subscription, deltas, FieldProjection.fromArguments(arguments),
+                                throttle == null ? 0 : throttle.longValue());
                     }
-                    subscribe(subscriptionId, subscription);
 
                     result.success(null);
                     break;
@@ -293,45 +377,165 @@ class FlutterRealm {
                     String subscriptionId = (String) arguments.get("subscriptionId");
                     int limit = (Integer) arguments.get("limit");
                     List predicate = (List) arguments.get("predicate");
-                    RealmResults<DynamicRealmObject> subscription;
-                    subscription = getQuery(realm.where(className), predicate, orderBy, ascending, limit).findAllAsync();
-                    if (orderBy != null) {
-                        if (ascending != null) {
-                            subscription = subscription.sort(orderBy, ascending ? Sort.ASCENDING : Sort.DESCENDING);
+                    boolean deltas = Boolean.TRUE.equals(arguments.get("deltas"));
+                    Number throttle = (Number) arguments.get("throttle");
+                    String signature = subscriptionSignature(call.method, arguments);
+
+                    if (!joinSubscription(subscriptionId, signature)) {
+                        RealmResults<DynamicRealmObject> subscription;
+                        List<List> sort = (List<List>) arguments.get("sort");
+                        if (sort != null) {
+                            // Takes precedence over orderBy, which would reorder the page against its cursor.
+                            subscription = keysetQuery(realm, className, predicate, sort, (Map) arguments.get("after"), limit).findAllAsync();
+                        } else {
+                            subscription = getQuery(className, predicate, orderBy, ascending, limit).findAllAsync();
+                            if (orderBy != null) {
+                                if (ascending != null) {
+                                    subscription = subscription.sort(orderBy, ascending ? Sort.ASCENDING : Sort.DESCENDING);
+                                }
+                            }
                         }
+                        subscribe(subscriptionId, signature, className, subscription, deltas, FieldProjection.fromArguments(arguments),
+                                throttle == null ? 0 : throttle.longValue());
                     }
-                    subscribe(subscriptionId, subscription);
 
                     result.success(null);
                     break;
                 }
-                case "objects": {
+                case "importFile": {
+                    result.success(importFile(arguments));
+                    break;
+                }
+                case "migrateThumbnails": {
+                    if (blobStore == null) {
+                        throw new Exception("Blob store not enabled");
+                    }
+                    Number chunkSize = (Number) arguments.get("chunkSize");
+                    ClassSchema.Field field = schemaCache.get(realm, Recording.CLASS_NAME).field(BlobStore.FIELD);
+                    int migrated = 0;
+                    while (true) {
+                        // Committed in chunks, so the write lock is released between them.
+                        RealmResults<DynamicRealmObject> pending = realm.where(Recording.CLASS_NAME).isNotNull(BlobStore.FIELD)
+                                .limit(chunkSize == null ? 100 : chunkSize.longValue()).findAll();
+                        if (pending.isEmpty()) {
+                            break;
+                        }
+                        beginTransaction();
+                        for (DynamicRealmObject object : pending.createSnapshot()) {
+                            storeExternal(new RealmRow(object), field, object.getBlob(BlobStore.FIELD));
+                            migrated++;
+                        }
+                        commitTransaction();
+                    }
+                    result.success(migrated);
+                    break;
+                }
+                case "count": {
                     String className = (String) arguments.get("$");
-                    int limit = (Integer) arguments.get("limit");
-                    String orderBy = (String) arguments.get("orderBy");
-                    Boolean ascending = (Boolean) arguments.get("ascending");
                     List predicate = (List) arguments.get("predicate");
-                    RealmResults<DynamicRealmObject> results = getQuery(realm.where(className), predicate, null, null, -1).findAll();
-                    int count = results.size();
-                    results = getQuery(realm.where(className), predicate, orderBy, ascending, limit).findAll();
-                    List list = convert(results);
-                    HashMap map = new HashMap();
-                    map.put("results", list);
-                    map.put("count", count);
-                    result.success(map);
+                    result.success(getQuery(className, predicate, null, null, -1).count());
                     break;
                 }
-                case "object": {
+                case "aggregate": {
+                    String className = (String) arguments.get("$");
+                    List predicate = (List) arguments.get("predicate");
+                    List<List> aggregates = (List<List>) arguments.get("aggregates");
+                    String groupBy = (String) arguments.get("groupBy");
+                    if (aggregates == null) {
+                        throw new Exception("No argument: aggregates");
+                    }
+                    ClassSchema schema = schemaCache.get(realm, className);
+                    RealmResults<DynamicRealmObject> results = getQuery(className, predicate, null, null, -1).findAll();
+
+                    ArrayList<Map> rows = new ArrayList<>();
+                    if (groupBy == null) {
+                        HashMap<String, Object> row = new HashMap<>();
+                        row.put("values", aggregate(schema, results, aggregates));
+                        rows.add(row);
+                    } else {
+                        ClassSchema.Field groupField = schema.field(groupBy);
+                        if (groupField == null) {
+                            throw new Exception("Unknown field: " + groupBy);
+                        }
+                        GroupAggregator.checkGroupField(groupField);
+                        String[] functions = new String[aggregates.size()];
+                        ClassSchema.Field[] fields = new ClassSchema.Field[functions.length];
+                        for (int i = 0; i < functions.length; i++) {
+                            functions[i] = (String) aggregates.get(i).get(0);
+                            if (!functions[i].equals("count")) {
+                                String fieldName = (String) aggregates.get(i).get(1);
+                                fields[i] = schema.field(fieldName);
+                                if (fields[i] == null) {
+                                    throw new Exception("Unknown field: " + fieldName);
+                                }
+                            }
+                        }
+                        GroupAggregator aggregator = new GroupAggregator(functions, fields);
+                        Object[] values = new Object[fields.length];
+                        RealmRow row = new RealmRow();
+                        for (DynamicRealmObject object : results) {
+                            row.wrap(object);
+                            for (int i = 0; i < fields.length; i++) {
+                                values[i] = fields[i] == null ? null : fields[i].read(row);
+                            }
+                            aggregator.add(groupField.read(row), values);
+                        }
+                        rows.addAll(aggregator.rows());
+                    }
+                    result.success(Collections.unmodifiableList(rows));
+                    break;
+                }
+                case "binaryField": {
                     String className = (String) arguments.get("$");
                     Object primaryKey = arguments.get("primaryKey");
-                    DynamicRealmObject object = find("Recording", primaryKey);
+                    String fieldName = (String) arguments.get("field");
+                    DynamicRealmObject object = find(className, primaryKey);
                     if (object == null) {
                         String msg = String.format("%s not found with primaryKey = %s", className, primaryKey);
                         result.error(msg, null, null);
                         return;
                     }
-                    HashMap map = objectToMap(object);
-                    result.success(map);
+                    ClassSchema.Field field = schemaCache.get(realm, className).field(fieldName);
+                    if (field == null || field.type != RealmFieldType.BINARY) {
+                        throw new Exception("Not a binary field: " + fieldName);
+                    }
+                    result.success(field.read(object));
+                    break;
+                }
+                case "openStream": {
+                    String className = (String) arguments.get("$");
+                    String streamId = (String) arguments.get("streamId");
+                    int limit = (Integer) arguments.get("limit");
+                    int chunkSize = (Integer) arguments.get("chunkSize");
+                    if (streamId == null || streams.containsKey(streamId)) {
+                        throw new Exception("Invalid streamId: " + streamId);
+                    }
+                    if (messenger == null) {
+                        throw new Exception("Streaming not supported");
+                    }
+                    DynamicRealm frozenRealm = realm.freeze();
+                    RealmResults<DynamicRealmObject> results = getQuery(frozenRealm, className, (List) arguments.get("predicate"),
+                            (String) arguments.get("orderBy"), (Boolean) arguments.get("ascending"), limit).findAll();
+                    openStream(new ResultStream(streamId, new EventChannel(messenger, STREAM_CHANNEL + "/" + streamId), frozenRealm,
+                            results, FieldProjection.fromArguments(arguments), Math.max(chunkSize, 1)));
+                    result.success(results.size());
+                    break;
+                }
+                case "streamNext": {
+                    ResultStream stream = streams.get((String) arguments.get("streamId"));
+                    if (stream == null) {
+                        throw new Exception("Stream closed: " + arguments.get("streamId"));
+                    }
+                    sendChunk(stream);
+                    result.success(null);
+                    break;
+                }
+                case "closeStream": {
+                    ResultStream stream = streams.get((String) arguments.get("streamId"));
+                    if (stream != null) {
+                        closeStream(stream);
+                    }
+                    result.success(null);
                     break;
                 }
                 case "unsubscribe": {
@@ -343,22 +547,56 @@ class FlutterRealm {
                     if (!subscriptions.containsKey(subscriptionId)) {
                         throw new Exception("Not subscribed: " + subscriptionId);
                     }
-                    RealmResults subscription = subscriptions.remove(subscriptionId);
+                    Subscription subscription = subscriptions.remove(subscriptionId);
                     if (subscription != null) {
-                        subscription.removeAllChangeListeners();
+                        subscription.subscriberIds.remove(subscriptionId);
+                        if (subscription.subscriberIds.isEmpty()) {
+                            sharedSubscriptions.remove(subscription.signature);
+                            subscription.cancel();
+                        }
                     }
 
                     result.success(null);
                     break;
                 }
                 case "deleteAllObjects": {
-                    this.realm.beginTransaction();
+                    beginTransaction();
                     this.realm.deleteAll();
-                    this.realm.commitTransaction();
+                    if (blobStore != null) {
+                        blobSpaceFreed = true;
+                    }
+                    commitTransaction();
 
                     result.success(null);
                     break;
                 }
+                case "flush": {
+                    // Buffered updates were already written before this call was dispatched.
+                    if (writeErrors.isEmpty()) {
+                        result.success(null);
+                    } else {
+                        List<Map> errors = new ArrayList<>(writeErrors);
+                        writeErrors.clear();
+                        result.error("Buffered updates failed", errors.size() + " buffered updates failed",
+                                Collections.unmodifiableList(errors));
+                    }
+                    break;
+                }
+                case "metrics": {
+                    result.success(metrics.snapshot());
+                    if (Boolean.TRUE.equals(arguments.get("reset"))) {
+                        metrics.reset();
+                    }
+                    break;
+                }
+                case "compact": {
+                    result.success(compact());
+                    break;
+                }
+                case "fileStats": {
+                    result.success(fileStats());
+                    break;
+                }
                 case "filePath": {
                     result.success(realm.getConfiguration().getPath());
                     break;
@@ -369,136 +607,862 @@ class FlutterRealm {
             }
 
         } catch (Exception e) {
-            if (realm.isInTransaction()) {
-                realm.cancelTransaction();
+            // Null if reopening after a compaction failed.
+            if (realm != null && realm.isInTransaction()) {
+                cancelTransaction();
             }
             e.printStackTrace();
             result.error(e.getMessage(), e.getMessage(), e.getStackTrace().toString());
         }
     }
 
-    private DynamicRealmObject find(String className, Object primaryKey) {
-        DynamicRealmObject object = null;
-        if (primaryKey instanceof String) {
-            object = realm.where(className).equalTo("uuid", (String) primaryKey).findFirst();
-        } else if (primaryKey instanceof Integer) {
-            object = realm.where(className).equalTo("uuid", (Integer) primaryKey).findFirst();
+    /**
+     * Compacts the realm file in place. Realm can only compact a file nobody has open, so this is
+     * skipped while subscriptions or streams hold results, and reports "compacted": false if
+     * another thread (e.g. the deletion journal) has the realm open at that moment.
+     *
+     * The blob store, if enabled, is compacted first (see {@link #compactBlobStore()}), under the
+     * same condition.
+     */
+    private Map<String, Object> compact() throws IOException {
+        File file = new File(configuration.getPath());
+        HashMap<String, Object> map = new HashMap<>();
+        if (blobStore != null && subscriptions.isEmpty() && streams.isEmpty()) {
+            map.put("blobStoreSizeBefore", blobStoreFile().length());
+            compactBlobStore();
+            map.put("blobStoreSizeAfter", blobStoreFile().length());
+        }
+        map.put("sizeBefore", file.length());
+        boolean compacted = false;
+        if (inMemory) {
+            map.put("reason", "inMemory");
+        } else if (!subscriptions.isEmpty() || !streams.isEmpty()) {
+            map.put("reason", "activeSubscriptions");
+        } else {
+            long started = SystemClock.uptimeMillis();
+            schemaCache.invalidate();
+            queryPlans.clear();
+            realm.close();
+            if (typedRealm != null) {
+                typedRealm.close();
+            }
+            RuntimeException failure = null;
+            try {
+                compacted = Realm.compactRealm(configuration);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            // Reopened whether or not compaction succeeded; the compaction error wins if both fail.
+            RuntimeException reopenFailure = reopenAfterCompaction();
+            if (failure != null) {
+                throw failure;
+            }
+            if (reopenFailure != null) {
+                throw reopenFailure;
+            }
+            map.put("millis", SystemClock.uptimeMillis() - started);
+        }
+        map.put("compacted", compacted);
+        map.put("sizeAfter", file.length());
+        return map;
+    }
+
+    /**
+     * Reopens the realms closed for compaction. If that fails, the realm is released and marked
+     * closed, so later calls are rejected instead of failing on the closed instances.
+     *
+     * @return the failure, or null if the realms were reopened
+     */
+    private RuntimeException reopenAfterCompaction() {
+        try {
+            typedRealm = Realm.getInstance(configuration);
+            realm = DynamicRealm.getInstance(configuration);
+            return null;
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            closed = true;
+            if (typedRealm != null && !typedRealm.isClosed()) {
+                typedRealm.close();
+            }
+            typedRealm = null;
+            realm = null;
+            deletionJournal.shutdown();
+            closeBlobStore();
+            return e;
         }
-        return object;
     }
 
-    private RealmQuery<DynamicRealmObject> getQuery(RealmQuery<DynamicRealmObject> query, List<List> predicate, String orderBy, Boolean ascending, int limit) throws Exception {
-        if (predicate == null) {
-            return query;
+    /**
+     * Copies the thumbnails still referenced into a new blob store generation and points the rows
+     * at it in one transaction. The new generation is synced before that commit and installed after
+     * it; {@link BlobStore#recover(DynamicRealm)} finishes the swap if the app dies in between.
+     * Only called while no subscription or stream holds rows, since frozen stream rows may outlive
+     * two generations.
+     */
+    private void compactBlobStore() throws IOException {
+        RealmResults<DynamicRealmObject> rows = realm.where(Recording.CLASS_NAME).greaterThan(BlobStore.LENGTH_FIELD, 0).findAll();
+        long[] offsets = new long[rows.size()];
+        int[] lengths = new int[rows.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = rows.get(i).getLong(BlobStore.OFFSET_FIELD);
+            lengths[i] = rows.get(i).getInt(BlobStore.LENGTH_FIELD);
         }
-        RealmQuery<DynamicRealmObject> result = query;
+        long[] moved = blobStore.writeCompacted(offsets, lengths);
+        List<DynamicRealmObject> snapshot = rows.createSnapshot();
+        try {
+            beginTransaction();
+            for (int i = 0; i < moved.length; i++) {
+                snapshot.get(i).setLong(BlobStore.OFFSET_FIELD, moved[i]);
+            }
+            commitTransaction();
+        } finally {
+            if (realm.isInTransaction()) {
+                cancelTransaction();
+                blobStore.discardCompacted();
+            }
+        }
+        blobStore.installCompacted();
+    }
 
-        for (List item : predicate) {
-            String operator = (String) item.get(0);
-            switch (operator) {
-                case "greaterThan": {
-                    String fieldName = (String) item.get(1);
-                    Object argument = item.get(2);
-                    if (argument instanceof Integer) {
-                        result = result.greaterThan(fieldName, (Integer) argument);
-                    } else if (argument instanceof Long) {
-                        result = result.greaterThan(fieldName, (Long) argument);
-                    } else {
-                        throw new Exception("Unsupported type");
+    private Map<String, Object> fileStats() {
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("fileSize", inMemory ? 0 : new File(configuration.getPath()).length());
+        if (blobStore != null) {
+            map.put("blobStoreSize", blobStoreFile().length());
+        }
+        if (compactionPolicy != null && compactionPolicy.launchTotalBytes >= 0) {
+            map.put("launchTotalBytes", compactionPolicy.launchTotalBytes);
+            map.put("launchUsedBytes", compactionPolicy.launchUsedBytes);
+            map.put("compactedOnLaunch", compactionPolicy.compactedOnLaunch);
+        }
+        return map;
+    }
+
+    /**
+     * Compacts the blob store once replaced and deleted thumbnails take up enough of it (see
+     * {@link BlobStore#worthCompacting(long, long)}), so their space doesn't wait for an explicit
+     * "compact". Runs when the realm is opened and after commits that freed blob space, unless a
+     * subscription or stream holds rows; then the next such commit or launch tries again.
+     */
+    private void reclaimBlobStore() {
+        if (blobStore == null || !subscriptions.isEmpty() || !streams.isEmpty()) {
+            return;
+        }
+        blobSpaceFreed = false;
+        try {
+            long liveBytes = realm.where(Recording.CLASS_NAME).sum(BlobStore.LENGTH_FIELD).longValue();
+            if (BlobStore.worthCompacting(blobStore.size(), liveBytes)) {
+                compactBlobStore();
+            }
+        } catch (Exception e) {
+            // Only space is lost; the next attempt starts over.
+            e.printStackTrace();
+        }
+    }
+
+    private File blobStoreFile() {
+        return new File(configuration.getRealmDirectory(), configuration.getRealmFileName() + ".blobs");
+    }
+
+    private void bufferWrite(String className, Object primaryKey, Map value) {
+        writeBuffer.add(className, primaryKey, value);
+        if (pendingWriteFlush == null) {
+            pendingWriteFlush = () -> {
+                pendingWriteFlush = null;
+                flushWrites();
+            };
+            realmThreadHandler().postDelayed(pendingWriteFlush, writeBufferMillis);
+        }
+    }
+
+    /**
+     * Writes all buffered updates in one transaction. If that fails, every update is retried in a
+     * transaction of its own, so one bad value only loses its own update. Updates that still fail,
+     * including those whose object was deleted in the meantime, are sent to Dart through
+     * "onWriteErrors" and kept for the next "flush" call.
+     */
+    private void flushWrites() {
+        if (pendingWriteFlush != null) {
+            realmThreadHandler().removeCallbacks(pendingWriteFlush);
+            pendingWriteFlush = null;
+        }
+        if (writeBuffer.isEmpty()) {
+            return;
+        }
+        List<WriteBuffer.Entry> entries = writeBuffer.drain();
+        ArrayList<Map> errors = new ArrayList<>();
+        try {
+            beginTransaction();
+            for (WriteBuffer.Entry entry : entries) {
+                DynamicRealmObject object = find(entry.className, entry.primaryKey);
+                if (object == null) {
+                    errors.add(notFound(entry));
+                } else {
+                    updateObject(object, entry.value);
+                }
+            }
+            commitTransaction();
+        } catch (Exception e) {
+            if (realm.isInTransaction()) {
+                cancelTransaction();
+            }
+            errors.clear();
+            for (WriteBuffer.Entry entry : entries) {
+                flushEntry(entry, errors);
+            }
+        }
+        if (!errors.isEmpty()) {
+            writeErrors.addAll(errors);
+            HashMap<String, Object> map = new HashMap<>();
+            map.put("realmId", realmId);
+            map.put("errors", Collections.unmodifiableList(errors));
+            invokeOnMainThread("onWriteErrors", Collections.unmodifiableMap(map));
+        }
+    }
+
+    private void flushEntry(WriteBuffer.Entry entry, List<Map> errors) {
+        try {
+            DynamicRealmObject object = find(entry.className, entry.primaryKey);
+            if (object == null) {
+                errors.add(notFound(entry));
+                return;
+            }
+            beginTransaction();
+            updateObject(object, entry.value);
+            commitTransaction();
+        } catch (Exception e) {
+            if (realm.isInTransaction()) {
+                cancelTransaction();
+            }
+            errors.add(writeError(entry, String.valueOf(e.getMessage())));
+        }
+    }
+
+    private static Map<String, Object> notFound(WriteBuffer.Entry entry) {
+        return writeError(entry, String.format("%s not found with primaryKey = %s", entry.className, entry.primaryKey));
+    }
+
+    private static Map<String, Object> writeError(WriteBuffer.Entry entry, String message) {
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("$", entry.className);
+        map.put("primaryKey", entry.primaryKey);
+        map.put("message", message);
+        return Collections.unmodifiableMap(map);
+    }
+
+    private void beginTransaction() {
+        realm.beginTransaction();
+        transactionStartedAt = System.nanoTime();
+    }
+
+    private void commitTransaction() throws IOException {
+        scheduleSummaries.flush(realm);
+        if (blobStore != null) {
+            // Once for everything the transaction appended, before any row can reference it.
+            blobStore.sync();
+        }
+        realm.commitTransaction();
+        metrics.recordTransaction(transactionStartedAt);
+        if (blobSpaceFreed && pendingBlobReclaim == null) {
+            // After the reply to this call, not before it.
+            pendingBlobReclaim = () -> {
+                pendingBlobReclaim = null;
+                if (realm != null) {
+                    reclaimBlobStore();
+                }
+            };
+            realmThreadHandler().post(pendingBlobReclaim);
+        }
+    }
 
+    private void cancelTransaction() {
+        scheduleSummaries.discard();
+        realm.cancelTransaction();
+        metrics.recordTransaction(transactionStartedAt);
+    }
+
+    /**
+     * Runs a read method on {@link #READ_POOL} against a frozen copy of the realm's current version,
+     * so reads run in parallel, never wait behind the realm thread or a write, and see one
+     * consistent version from start to end.
+     */
+    private void readOnSnapshot(final MethodCall call, MethodChannel.Result result) {
+        final MethodChannel.Result reply = realmHandler == null ? new MainThreadResult(result, handler) : result;
+        // Readers of externalized fields hold the store, so it must stay open until the read ends.
+        final BlobStore store = blobStore;
+        if (store != null && !store.beginRead()) {
+            reply.error("Realm closed", call.method, null);
+            return;
+        }
+        final DynamicRealm snapshot = realm.freeze();
+        READ_POOL.execute(() -> {
+            long started = metrics.begin(call.method);
+            try {
+                handleRead(snapshot, call, reply);
+            } catch (Exception e) {
+                e.printStackTrace();
+                reply.error(e.getMessage(), e.getMessage(), e.getStackTrace().toString());
+            } finally {
+                snapshot.close();
+                if (store != null) {
+                    try {
+                        store.endRead();
+                    } catch (IOException e) {
+                        e.printStackTrace();
                     }
                 }
-                break;
-                case "greaterThanOrEqualTo": {
-                    String fieldName = (String) item.get(1);
-                    Object argument = item.get(2);
-                    if (argument instanceof Integer) {
-                        result = result.greaterThanOrEqualTo(fieldName, (Integer) argument);
-                    } else if (argument instanceof Long) {
-                        result = result.greaterThanOrEqualTo(fieldName, (Long) argument);
-                    } else {
-                        throw new Exception("Unsupported type");
+                metrics.endMethod(call.method, started);
+            }
+        });
+    }
+
+    private void handleRead(DynamicRealm realm, MethodCall call, final MethodChannel.Result result) throws Exception {
+        Map arguments = (Map) call.arguments;
+        switch (call.method) {
+            case "getRecordingIdsForScheduleIds": {
+                List<String> scheduleIds = (List<String>)arguments.get("scheduleIds");
+                String orderBy = (String) arguments.get("orderBy");
+                Boolean ascending = (Boolean) arguments.get("ascending");
+                RealmQuery query = realm.where(Recording.CLASS_NAME).in("scheduleId", scheduleIds.toArray(new String[0]));
+                if (orderBy != null) {
+                    if (ascending != null) {
+                        query = query.sort(orderBy, ascending ? Sort.ASCENDING : Sort.DESCENDING);
                     }
                 }
+                RealmResults<DynamicRealmObject> objects = query.findAll();
+                ArrayList list = new ArrayList<>();
+                for (DynamicRealmObject object : objects) {
+                    HashMap map = new HashMap();
+                    map.put("uuid", object.get("uuid"));
+                    map.put("scheduleId", object.get("scheduleId"));
+                    list.add(map);
+                }
+                HashMap map = new HashMap();
+                map.put("results", Collections.unmodifiableList(list));
+                map.put("count", objects.size());
+                result.success(map);
                 break;
-                case "lessThan": {
-                    String fieldName = (String) item.get(1);
-                    Object argument = item.get(2);
-                    if (argument instanceof Integer) {
-                        result = result.lessThan(fieldName, (Integer) argument);
-                    } else if (argument instanceof Long) {
-                        result = result.lessThan(fieldName, (Long) argument);
-                    } else {
-                        throw new Exception("Unsupported type");
+            }
+            case "getRecordingIdsForSchedule": {
+                String scheduleId = (String)arguments.get("scheduleId");
+                String orderBy = (String) arguments.get("orderBy");
+                Boolean ascending = (Boolean) arguments.get("ascending");
+                RealmQuery query = realm.where(Recording.CLASS_NAME).equalTo("scheduleId", scheduleId);
+                if (orderBy != null) {
+                    if (ascending != null) {
+                        query = query.sort(orderBy, ascending ? Sort.ASCENDING : Sort.DESCENDING);
                     }
                 }
+                RealmResults<DynamicRealmObject> objects = query.findAll();
+                ArrayList list = new ArrayList<>();
+                for (DynamicRealmObject object : objects) {
+                    list.add(object.get("uuid"));
+                }
+                HashMap map = new HashMap();
+                map.put("results", Collections.unmodifiableList(list));
+                map.put("count", objects.size());
+                result.success(map);
                 break;
-                case "lessThanOrEqualTo": {
-                    String fieldName = (String) item.get(1);
-                    Object argument = item.get(2);
-                    if (argument instanceof Integer) {
-                        result = result.lessThanOrEqualTo(fieldName, (Integer) argument);
-                    } else if (argument instanceof Long) {
-                        result = result.lessThanOrEqualTo(fieldName, (Long) argument);
-                    } else {
-                        throw new Exception("Unsupported type");
+            }
+            case "getScheduleIdsWithRecordings": {
+                List<String> scheduleIds = (List<String>)arguments.get("scheduleIds");
+                String orderBy = (String) arguments.get("orderBy");
+                Boolean ascending = (Boolean) arguments.get("ascending");
+                String sortField = orderBy == null ? null : ScheduleSummaries.sortField(orderBy);
+                RealmQuery query;
+                if (orderBy == null || sortField != null) {
+                    // Only schedules with recordings have a summary, so this is a primary-key lookup.
+                    query = realm.where(ScheduleSummaries.CLASS_NAME).in("scheduleId", scheduleIds.toArray(new String[0]));
+                    orderBy = sortField;
+                } else {
+                    query = realm.where(Recording.CLASS_NAME).in("scheduleId", scheduleIds.toArray(new String[0])).distinct("scheduleId");
+                }
+                if (orderBy != null) {
+                    if (ascending != null) {
+                        query = query.sort(orderBy, ascending ? Sort.ASCENDING : Sort.DESCENDING);
                     }
                 }
+                RealmResults<DynamicRealmObject> objects = query.findAll();
+                ArrayList list = new ArrayList<>();
+                for (DynamicRealmObject object : objects) {
+                    list.add(object.get("scheduleId"));
+                }
+                HashMap map = new HashMap();
+                map.put("results", Collections.unmodifiableList(list));
+                map.put("count", objects.size());
+                result.success(map);
                 break;
-                case "equalTo": {
-                    String fieldName = (String) item.get(1);
-                    Object argument = item.get(2);
-                    if (argument instanceof Integer) {
-                        result = result.equalTo(fieldName, (Integer) argument);
-                    } else if (argument instanceof String) {
-                        result = result.equalTo(fieldName, (String) argument);
-                    } else if (argument instanceof Long) {
-                        result = result.equalTo(fieldName, (Long) argument);
-                    } else {
-                        throw new Exception("Unsupported type");
+            }
+            case "getAllScheduleIds": {
+                int limit = (Integer) arguments.get("limit");
+                String orderBy = (String) arguments.get("orderBy");
+                Boolean ascending = (Boolean) arguments.get("ascending");
+                String sortField = orderBy == null ? null : ScheduleSummaries.sortField(orderBy);
+                RealmQuery query;
+                if (orderBy == null || sortField != null) {
+                    query = realm.where(ScheduleSummaries.CLASS_NAME);
+                    orderBy = sortField;
+                } else {
+                    query = realm.where(Recording.CLASS_NAME).distinct("scheduleId");
+                }
+                if (orderBy != null) {
+                    if (ascending != null) {
+                        query = query.sort(orderBy, ascending ? Sort.ASCENDING : Sort.DESCENDING);
                     }
                 }
+                // One evaluation gives both the total and the page.
+                RealmResults<DynamicRealmObject> objects = query.findAll();
+                int count = objects.size();
+                int pageSize = pageSize(count, limit);
+                ArrayList list = new ArrayList<>(pageSize);
+                for (int i = 0; i < pageSize; i++) {
+                    list.add(objects.get(i).get("scheduleId"));
+                }
+                HashMap map = new HashMap();
+                map.put("results", Collections.unmodifiableList(list));
+                map.put("count", count);
+                result.success(map);
                 break;
-                case "notEqualTo": {
-                    String fieldName = (String) item.get(1);
-                    Object argument = item.get(2);
-                    if (argument instanceof Integer) {
-                        result = result.notEqualTo(fieldName, (Integer) argument);
-                    } else if (argument instanceof String) {
-                        result = result.notEqualTo(fieldName, (String) argument);
-                    } else if (argument instanceof Long) {
-                        result = result.notEqualTo(fieldName, (Long) argument);
-                    } else {
-                        throw new Exception("Unsupported type");
-                    }
+            }
+            case "allObjects": {
+                String className = (String) arguments.get("$");
+                RealmResults<DynamicRealmObject> results = realm.where(className).findAll();
+                HashMap map = new HashMap();
+                putResults(realm, map, className, results, results.size(), arguments);
+                map.put("count", results.size());
+                result.success(map);
+                break;
+            }
+            case "objects": {
+                String className = (String) arguments.get("$");
+                int limit = (Integer) arguments.get("limit");
+                String orderBy = (String) arguments.get("orderBy");
+                Boolean ascending = (Boolean) arguments.get("ascending");
+                List predicate = (List) arguments.get("predicate");
+                List<List> sort = (List<List>) arguments.get("sort");
+                if (sort != null) {
+                    Map after = (Map) arguments.get("after");
+                    RealmResults<DynamicRealmObject> results = keysetQuery(realm, className, predicate, sort, after, limit).findAll();
+                    HashMap map = new HashMap();
+                    putResults(realm, map, className, results, results.size(), arguments);
+                    // Total matches, counted without sorting or materializing them.
+                    map.put("count", getQuery(realm, className, predicate, null, null, -1).count());
+                    map.put("cursor", results.isEmpty() ? after : keyset(realm, className, sort).cursorAt(results, results.size() - 1, after));
+                    result.success(map);
+                    break;
                 }
+                // Sorted but unlimited, so the same results give the total and the page.
+                RealmResults<DynamicRealmObject> results = getQuery(realm, className, predicate, orderBy, ascending, -1).findAll();
+                int count = results.size();
+                HashMap map = new HashMap();
+                putResults(realm, map, className, results, pageSize(count, limit), arguments);
+                map.put("count", count);
+                result.success(map);
                 break;
-                case "contains": {
-                    String fieldName = (String) item.get(1);
-                    Object argument = item.get(2);
-                    if (argument instanceof String) {
-                        result = result.contains(fieldName, (String) argument);
-                    } else {
-                        throw new Exception("Unsupported type");
-                    }
+            }
+            case "object": {
+                String className = (String) arguments.get("$");
+                Object primaryKey = arguments.get("primaryKey");
+                DynamicRealmObject object = find(realm, className, primaryKey);
+                if (object == null) {
+                    String msg = String.format("%s not found with primaryKey = %s", className, primaryKey);
+                    result.error(msg, null, null);
+                    return;
                 }
+                ClassSchema.Field[] fields = schemaCache.get(realm, className).select(FieldProjection.fromArguments(arguments));
+                HashMap map = objectToMap(object, fields);
+                recordConverted(Collections.<Map>singletonList(map));
+                result.success(map);
                 break;
-                case "in": {
-                    String fieldName = (String) item.get(1);
-                    List<String> argument = (List)item.get(2);
-                    result = result.in(fieldName, argument.toArray(new String[0]));
+            }
+            case "search": {
+                String query = (String) arguments.get("query");
+                Number limit = (Number) arguments.get("limit");
+                if (query == null) {
+                    throw new Exception("No argument: query");
                 }
+                result.success(Collections.unmodifiableList(SearchIndex.search(realm, query, limit == null ? -1 : limit.intValue())));
                 break;
-                case "and":
-                    result = result.and();
+            }
+            case "objectsByPrimaryKeys": {
+                String className = (String) arguments.get("$");
+                List primaryKeys = (List) arguments.get("primaryKeys");
+                if (primaryKeys == null) {
+                    throw new Exception("No argument: primaryKeys");
+                }
+                result.success(objectsByPrimaryKeys(realm, className, primaryKeys, FieldProjection.fromArguments(arguments)));
+                break;
+            }
+            default:
+                result.notImplemented();
+                break;
+        }
+    }
+
+    /**
+     * Evaluates {@code [function]} / {@code [function, fieldName]} aggregates ("count", "sum", "avg",
+     * "min", "max") natively over {@code results}. DATE fields report min/max as milliseconds.
+     */
+    private List<Object> aggregate(ClassSchema schema, RealmResults<DynamicRealmObject> results, List<List> aggregates) throws Exception {
+        ArrayList<Object> values = new ArrayList<>(aggregates.size());
+        for (List aggregate : aggregates) {
+            String function = (String) aggregate.get(0);
+            if (function.equals("count")) {
+                values.add(results.size());
+                continue;
+            }
+            String fieldName = (String) aggregate.get(1);
+            ClassSchema.Field field = schema.field(fieldName);
+            if (field == null) {
+                throw new Exception("Unknown field: " + fieldName);
+            }
+            boolean isDate = field.type == RealmFieldType.DATE;
+            switch (function) {
+                case "sum":
+                    values.add(results.sum(fieldName));
                     break;
-                case "or":
-                    result = result.or();
+                case "avg":
+                    values.add(results.isEmpty() ? null : results.average(fieldName));
                     break;
+                case "min": {
+                    Object value = isDate ? results.minDate(fieldName) : results.min(fieldName);
+                    values.add(value instanceof Date ? ((Date) value).getTime() : value);
+                    break;
+                }
+                case "max": {
+                    Object value = isDate ? results.maxDate(fieldName) : results.max(fieldName);
+                    values.add(value instanceof Date ? ((Date) value).getTime() : value);
+                    break;
+                }
+                default:
+                    throw new Exception("Unknown aggregate: " + function);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Applies one "batch" operation inside the caller's transaction. Operations take the same
+     * arguments as the standalone createObject/updateObject/deleteObject calls; any failure is
+     * rethrown with its index so the whole transaction is cancelled by the caller.
+     */
+    private Object applyOperation(int index, Map operation) throws Exception {
+        String method = (String) operation.get("method");
+        String className = (String) operation.get("$");
+        try {
+            switch (method == null ? "" : method) {
+                case "createObject":
+                    insertObject(operation);
+                    return null;
+                case "updateObject": {
+                    Object primaryKey = operation.get("primaryKey");
+                    DynamicRealmObject object = find(className, primaryKey);
+                    if (object == null) {
+                        throw new Exception(String.format("%s not found with primaryKey = %s", className, primaryKey));
+                    }
+                    updateObject(object, (Map) operation.get("value"));
+                    return objectToMap(object, FieldProjection.ALL);
+                }
+                case "deleteObject": {
+                    Object primaryKey = operation.get("primaryKey");
+                    DynamicRealmObject object = find(className, primaryKey);
+                    if (object == null) {
+                        throw new Exception(String.format("%s not found with primaryKey = %s", className, primaryKey));
+                    }
+                    removeObject(object);
+                    return null;
+                }
                 default:
-                    throw new Exception("Unknown operator");
+                    throw new Exception("Unknown method: " + method);
+            }
+        } catch (Exception e) {
+            throw new Exception(String.format("Operation %d (%s) failed: %s", index, method, e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Imports the newline-delimited JSON objects in the file at "path" as "$" objects, committing
+     * every "chunkSize" records and reporting progress through "onImportProgress" after each commit.
+     * Records whose primary key already exists update that object, and the offset of the last commit
+     * is kept in a "<path>.checkpoint" file, so an interrupted import can be rerun with "resume".
+     * Numbers are converted to the field's type, DATE fields take milliseconds and BINARY fields
+     * base64 strings.
+     */
+    private Map<String, Object> importFile(Map arguments) throws Exception {
+        String className = (String) arguments.get("$");
+        String path = (String) arguments.get("path");
+        String importId = (String) arguments.get("importId");
+        Number chunkSize = (Number) arguments.get("chunkSize");
+        int recordsPerCommit = chunkSize == null ? 500 : Math.max(chunkSize.intValue(), 1);
+        if (className == null || path == null) {
+            throw new Exception("No argument: $ or path");
+        }
+
+        ClassSchema schema = schemaCache.get(realm, className);
+        File checkpoint = importCheckpointFile(path);
+        long[] state = Boolean.TRUE.equals(arguments.get("resume")) ? readCheckpoint(checkpoint, path) : new long[2];
+        long rows = state[1];
+
+        NdjsonReader reader = new NdjsonReader(new File(path), state[0]);
+        try {
+            long totalBytes = reader.size();
+            int imported;
+            do {
+                imported = 0;
+                beginTransaction();
+                Map<String, Object> record;
+                while (imported < recordsPerCommit && (record = reader.next()) != null) {
+                    importRecord(schema, record);
+                    imported++;
+                }
+                if (imported == 0) {
+                    // The last chunk ended exactly at the end of the file.
+                    cancelTransaction();
+                    break;
+                }
+                commitTransaction();
+                rows += imported;
+                writeCheckpoint(checkpoint, path, reader.position(), rows);
+
+                HashMap<String, Object> progress = new HashMap<>();
+                progress.put("realmId", realmId);
+                progress.put("importId", importId);
+                progress.put("rows", rows);
+                progress.put("bytes", reader.position());
+                progress.put("totalBytes", totalBytes);
+                invokeOnMainThread("onImportProgress", Collections.unmodifiableMap(progress));
+            } while (imported == recordsPerCommit);
+
+            checkpoint.delete();
+            HashMap<String, Object> map = new HashMap<>();
+            map.put("rows", rows);
+            map.put("bytes", reader.position());
+            return map;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void importRecord(ClassSchema schema, Map<String, Object> record) throws IOException {
+        for (ClassSchema.Field field : schema.fields) {
+            if (record.containsKey(field.name)) {
+                record.put(field.name, coerce(field, record.get(field.name)));
+            }
+        }
+        DynamicRealmObject existing = schema.primaryKey == null ? null : find(schema.className, record.get(schema.primaryKey));
+        if (existing == null) {
+            record.put("$", schema.className);
+            insertObject(record);
+        } else {
+            updateObject(existing, record);
+        }
+    }
+
+    /**
+     * Converts a value parsed from JSON to what {@code DynamicRealmObject.set} expects for the field.
+     */
+    private static Object coerce(ClassSchema.Field field, Object value) {
+        if (value == null || field.isList) {
+            return value;
+        }
+        switch (field.type) {
+            case INTEGER:
+                return ((Number) value).longValue();
+            case FLOAT:
+                return ((Number) value).floatValue();
+            case DOUBLE:
+                return ((Number) value).doubleValue();
+            case DATE:
+                return new Date(((Number) value).longValue());
+            case BINARY:
+                return value instanceof String ? Base64.decode((String) value, Base64.DEFAULT) : value;
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Checkpoint of importing {@code path}, kept next to the realm rather than the input, which may
+     * be in a read-only directory such as shared storage.
+     */
+    private File importCheckpointFile(String path) {
+        String key = Integer.toHexString(path.hashCode());
+        return new File(configuration.getRealmDirectory(), configuration.getRealmFileName() + ".import-" + key + ".checkpoint");
+    }
+
+    /**
+     * Byte offset and row count of the last committed chunk of importing {@code path}, or zeros
+     * without a checkpoint for it.
+     */
+    private static long[] readCheckpoint(File file, String path) throws IOException {
+        if (!file.exists()) {
+            return new long[2];
+        }
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            // The file name only holds a hash of the path.
+            if (!in.readUTF().equals(path)) {
+                return new long[2];
+            }
+            return new long[]{in.readLong(), in.readLong()};
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeCheckpoint(File file, String path, long offset, long rows) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeUTF(path);
+            data.writeLong(offset);
+            data.writeLong(rows);
+            data.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+    }
+
+    private DynamicRealmObject insertObject(Map arguments) throws IOException {
+        String className = (String) arguments.get("$");
+        assert className != null;
+
+        ClassSchema schema = schemaCache.get(realm, className);
+        DynamicRealmObject object;
+        if (schema.primaryKey == null) {
+            object = realm.createObject(className);
+        } else {
+            Object primaryKey = arguments.get(schema.primaryKey);
+            assert primaryKey != null;
+            object = realm.createObject(className, primaryKey instanceof Integer ? ((Integer) primaryKey).longValue() : primaryKey);
+        }
+        mapToObject(object, arguments);
+        if (className.equals(Recording.CLASS_NAME)) {
+            SearchIndex.index(realm, object.getString("uuid"), object.getString(SearchIndex.FIELD));
+            scheduleSummaries.added(realm, object);
+        }
+        return object;
+    }
+
+    private void updateObject(DynamicRealmObject object, Map value) throws IOException {
+        boolean affectsSummary = false;
+        boolean titleChanged = false;
+        if (object.getType().equals(Recording.CLASS_NAME)) {
+            ClassSchema schema = schemaCache.get(realm, Recording.CLASS_NAME);
+            affectsSummary = ScheduleSummaries.affectedBy(schema, object, value);
+            titleChanged = value.containsKey(SearchIndex.FIELD) && schema.field(SearchIndex.FIELD).changes(object, value.get(SearchIndex.FIELD));
+        }
+        if (affectsSummary) {
+            // The schedule the recording leaves, which may differ from the one it ends up in.
+            scheduleSummaries.changed(object.getString("scheduleId"));
+        }
+        mapToObject(object, value);
+        if (affectsSummary) {
+            // The schedule it belongs to after the update.
+            scheduleSummaries.changed(object.getString("scheduleId"));
+        }
+        if (titleChanged) {
+            SearchIndex.index(realm, object.getString("uuid"), object.getString(SearchIndex.FIELD));
+        }
+    }
+
+    private void removeObject(DynamicRealmObject object) {
+        if (object.getType().equals(Recording.CLASS_NAME)) {
+            SearchIndex.remove(realm, object.getString("uuid"));
+            scheduleSummaries.changed(object.getString("scheduleId"));
+            if (blobStore != null && object.getInt(BlobStore.LENGTH_FIELD) > 0) {
+                blobSpaceFreed = true;
+            }
+        }
+        object.deleteFromRealm();
+    }
+
+    private DynamicRealmObject find(String className, Object primaryKey) {
+        return find(realm, className, primaryKey);
+    }
+
+    /**
+     * Looks an object up by the class's declared primary key, which Realm always indexes. Returns
+     * null for classes without a primary key and for keys of the wrong type.
+     */
+    private DynamicRealmObject find(DynamicRealm realm, String className, Object primaryKey) {
+        ClassSchema schema = schemaCache.get(realm, className);
+        if (schema.primaryKey == null) {
+            return null;
+        }
+        RealmQuery<DynamicRealmObject> query = realm.where(className);
+        if (primaryKey == null) {
+            return query.isNull(schema.primaryKey).findFirst();
+        }
+        // Realm throws on a typed equalTo against a key of another type.
+        Object key = schema.field(schema.primaryKey).asKey(primaryKey);
+        if (key instanceof String) {
+            query = query.equalTo(schema.primaryKey, (String) key);
+        } else if (key instanceof Long) {
+            query = query.equalTo(schema.primaryKey, (Long) key);
+        } else {
+            return null;
+        }
+        return query.findFirst();
+    }
+
+    /**
+     * Fetches the objects with the given primary keys in one query. The returned list is aligned
+     * with {@code primaryKeys} and holds null where no object exists.
+     */
+    private List<Map> objectsByPrimaryKeys(DynamicRealm realm, String className, List primaryKeys, FieldProjection projection) throws Exception {
+        ClassSchema schema = schemaCache.get(realm, className);
+        if (schema.primaryKey == null) {
+            throw new Exception(className + " has no primary key");
+        }
+        ClassSchema.Field key = schema.field(schema.primaryKey);
+        ArrayList<String> stringKeys = new ArrayList<>();
+        ArrayList<Long> longKeys = new ArrayList<>();
+        for (Object primaryKey : primaryKeys) {
+            Object value = key.asKey(primaryKey);
+            if (value instanceof String) {
+                stringKeys.add((String) value);
+            } else if (value instanceof Long) {
+                longKeys.add((Long) value);
             }
         }
+        ClassSchema.Field[] fields = schema.select(projection);
+        HashMap<Object, Map> found = new HashMap<>(primaryKeys.size() * 2);
+        boolean isString = key.type == RealmFieldType.STRING;
+        // Realm rejects an empty "in", and then nothing can match anyway.
+        if (isString ? !stringKeys.isEmpty() : !longKeys.isEmpty()) {
+            RealmQuery<DynamicRealmObject> query = isString
+                    ? realm.where(className).in(schema.primaryKey, stringKeys.toArray(new String[0]))
+                    : realm.where(className).in(schema.primaryKey, longKeys.toArray(new Long[0]));
+            RealmRow row = new RealmRow();
+            for (DynamicRealmObject object : query.findAll()) {
+                row.wrap(object);
+                found.put(key.read(row), ClassSchema.toMap(row, fields));
+            }
+            if (metrics.isEnabled()) {
+                recordConverted(new ArrayList<>(found.values()));
+            }
+        }
+        ArrayList<Map> list = new ArrayList<>(primaryKeys.size());
+        for (Object primaryKey : primaryKeys) {
+            Object value = key.asKey(primaryKey);
+            list.add(value == null ? null : found.get(value));
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    private RealmQuery<DynamicRealmObject> getQuery(String className, List<List> predicate, String orderBy, Boolean ascending, int limit) {
+        return getQuery(realm, className, predicate, orderBy, ascending, limit);
+    }
+
+    private RealmQuery<DynamicRealmObject> getQuery(DynamicRealm realm, String className, List<List> predicate, String orderBy,
+                                                    Boolean ascending, int limit) {
+        RealmQuery<DynamicRealmObject> result = realm.where(className);
+        if (predicate != null && !predicate.isEmpty()) {
+            QueryPlan plan = queryPlans.get(schemaCache.get(realm, className), predicate);
+            result = plan.bind(result, predicate);
+        }
         if (orderBy != null && ascending != null) {
             result = result.sort(orderBy, ascending ? Sort.ASCENDING : Sort.DESCENDING);
         }
@@ -508,81 +1472,452 @@ class FlutterRealm {
         return result;
     }
 
-    private void subscribe(final String subscriptionId, RealmResults<DynamicRealmObject> subscription) throws Exception {
+    private KeysetCursor keyset(DynamicRealm realm, String className, List<List> sort) throws Exception {
+        return KeysetCursor.compile(schemaCache.get(realm, className), sort);
+    }
+
+    /**
+     * Query for one keyset page: {@code predicate}, then the rows after the {@code after} cursor
+     * (if any) in {@code sort} order, at most {@code limit} of them.
+     */
+    private RealmQuery<DynamicRealmObject> keysetQuery(DynamicRealm realm, String className, List predicate, List<List> sort, Map after,
+                                                       int limit) throws Exception {
+        KeysetCursor keyset = keyset(realm, className, sort);
+        RealmQuery<DynamicRealmObject> query = getQuery(realm, className, predicate, null, null, -1);
+        if (after != null) {
+            query = keyset.after(query, after);
+        }
+        query = keyset.sort(query);
+        if (limit >= 0) {
+            query = query.limit(limit);
+        }
+        return query;
+    }
+
+    private static String subscriptionSignature(String method, Map arguments) {
+        StringBuilder builder = new StringBuilder(method);
+        for (String key : new String[]{"$", "predicate", "orderBy", "ascending", "limit", "sort", "after", "deltas", "throttle", "fields", "excludeFields"}) {
+            builder.append('|').append(arguments.get(key));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Adds {@code subscriptionId} to an existing subscription with the same signature, if any. The
+     * new subscriber gets the current results right away unless the first notification is still
+     * pending, in which case it receives that one with everybody else.
+     */
+    private boolean joinSubscription(String subscriptionId, String signature) throws Exception {
         if (subscriptions.containsKey(subscriptionId)) {
             throw new Exception("Already subscribed");
         }
+        Subscription subscription = sharedSubscriptions.get(signature);
+        if (subscription == null) {
+            return false;
+        }
 
+        if (subscription.notified && subscription.pendingFlush != null) {
+            // Bring existing subscribers up to date first, so everybody shares the same base for later deltas.
+            subscription.handler.removeCallbacks(subscription.pendingFlush);
+            subscription.pendingFlush = null;
+            notifyMerged(subscription);
+        }
+        subscription.subscriberIds.add(subscriptionId);
         subscriptions.put(subscriptionId, subscription);
-        subscription.addChangeListener(new OrderedRealmCollectionChangeListener<RealmResults<DynamicRealmObject>>() {
+
+        if (subscription.notified && subscription.results.isValid()) {
+            Map<String, Object> map = newNotification(subscription, Collections.singletonList(subscriptionId));
+            map.put("results", convert(subscription.results, subscription.projection));
+            invokeOnMainThread("onResultsChange", Collections.unmodifiableMap(map));
+        }
+        return true;
+    }
+
+    /**
+     * Registers a change listener that pushes results through "onResultsChange" to every subscriber
+     * of the query. With {@code deltas} the first callback carries the full snapshot and every later
+     * one carries only the change set: deleted indexes (in the previous results), inserted and
+     * modified indexes (in the new results) and the objects at those new indexes.
+     *
+     * With a {@code throttleMillis} window at most one notification is sent per window; changes that
+     * arrive in between are merged into the next one.
+     */
+    private void subscribe(final String subscriptionId, String signature, String className, RealmResults<DynamicRealmObject> results,
+                           final boolean deltas, final FieldProjection projection, long throttleMillis) {
+        final Subscription subscription = new Subscription(signature, className, results, deltas, projection, throttleMillis,
+                new Handler(Looper.myLooper()));
+        subscription.subscriberIds.add(subscriptionId);
+        subscriptions.put(subscriptionId, subscription);
+        sharedSubscriptions.put(signature, subscription);
+        results.addChangeListener(new OrderedRealmCollectionChangeListener<RealmResults<DynamicRealmObject>>() {
             @Override
             public void onChange(RealmResults<DynamicRealmObject> results, OrderedCollectionChangeSet changeSet) {
-                List list = convert(results);
-                Map<String, Object> map = new HashMap<>();
-                map.put("realmId", realmId);
-                map.put("subscriptionId", subscriptionId);
-                map.put("results", list);
-                map.put("count", results.size());
+                if (subscription.throttleMillis > 0) {
+                    onThrottledChange(subscription, changeSet);
+                    return;
+                }
+                long started = metrics.begin("onResultsChange");
+                Map<String, Object> map = newNotification(subscription, subscription.subscriberIds);
+                if (deltas && changeSet.getState() == OrderedCollectionChangeSet.State.UPDATE) {
+                    int[] insertions = changeSet.getInsertions();
+                    int[] modifications = changeSet.getChanges();
+                    map.put("deletions", changeSet.getDeletions());
+                    map.put("insertions", insertions);
+                    map.put("insertedObjects", convert(results, insertions, projection));
+                    map.put("modifications", modifications);
+                    map.put("modifiedObjects", convert(results, modifications, projection));
+                } else {
+                    map.put("results", convert(results, projection));
+                }
+                subscription.notified = true;
 
-                channel.invokeMethod("onResultsChange", Collections.unmodifiableMap(map));
+                invokeOnMainThread("onResultsChange", Collections.unmodifiableMap(map));
+                metrics.endNotification(started);
             }
         });
     }
 
-    private HashMap objectToMap(DynamicRealmObject object) {
-        HashMap<String, Object> map = new HashMap<>();
-
-        for (String fieldName : object.getFieldNames()) {
-            if (object.isNull(fieldName)) {
-                continue;
+    /**
+     * Serves {@code stream} on its own EventChannel. The first chunk goes out when the Dart side
+     * listens and every further one on "streamNext", so at most one chunk is in flight. Cancelling
+     * the listener closes the stream and its frozen realm.
+     */
+    private void openStream(final ResultStream stream) {
+        streams.put(stream.id, stream);
+        final EventChannel.StreamHandler streamHandler = new EventChannel.StreamHandler() {
+            @Override
+            public void onListen(Object arguments, EventChannel.EventSink events) {
+                stream.sink = events;
+                runOnRealmThread(() -> {
+                    if (streams.get(stream.id) == stream) {
+                        sendChunk(stream);
+                    }
+                });
             }
-            if (object.getFieldType(fieldName) == RealmFieldType.STRING_LIST) {
-                Object value = object.getList(fieldName, String.class);
-                map.put(fieldName, value);
-                continue;
+
+            @Override
+            public void onCancel(Object arguments) {
+                runOnRealmThread(() -> {
+                    if (streams.get(stream.id) == stream) {
+                        closeStream(stream);
+                    }
+                });
             }
-            if (object.getFieldType(fieldName) == RealmFieldType.INTEGER_LIST) {
-                Object value = object.getList(fieldName, Integer.class);
-                map.put(fieldName, value);
-                continue;
+        };
+        // Registered before the "openStream" reply, which is posted to the main thread after it.
+        runOnMainThread(() -> stream.channel.setStreamHandler(streamHandler));
+    }
+
+    private void sendChunk(final ResultStream stream) {
+        int end = Math.min(stream.position + stream.chunkSize, stream.results.size());
+        final List chunk = convert(stream.frozenRealm, stream.results, stream.position, end, stream.projection);
+        stream.position = end;
+        final boolean last = end == stream.results.size();
+        runOnMainThread(() -> {
+            stream.sink.success(chunk);
+            if (last) {
+                stream.sink.endOfStream();
             }
-            Object value = object.get(fieldName);
-            map.put(fieldName, value);
+        });
+        if (last) {
+            closeStream(stream);
+        }
+    }
+
+    private void closeStream(final ResultStream stream) {
+        streams.remove(stream.id);
+        if (!stream.frozenRealm.isClosed()) {
+            stream.frozenRealm.close();
         }
+        runOnMainThread(() -> stream.channel.setStreamHandler(null));
+    }
+
+    private Map<String, Object> newNotification(Subscription subscription, Collection<String> subscriberIds) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("realmId", realmId);
+        map.put("subscriptionIds", new ArrayList<>(subscriberIds));
+        map.put("count", subscription.results.size());
         return map;
     }
 
-    private void mapToObject(DynamicRealmObject object, Map map) {
-        for (String fieldName : object.getFieldNames()) {
-            if (!map.containsKey(fieldName) || fieldName.equals("uuid")) {
-                continue;
+    private void onThrottledChange(final Subscription subscription, OrderedCollectionChangeSet changeSet) {
+        ClassSchema.Field key = subscription.deltas ? primaryKeyField(subscription.className) : null;
+        if (key != null && subscription.sentKeys != null) {
+            for (int index : changeSet.getChanges()) {
+                subscription.modifiedKeys.add(key.read(subscription.results.get(index)));
+            }
+        }
+        if (subscription.pendingFlush != null) {
+            return;
+        }
+        long delay = subscription.lastNotifiedAt + subscription.throttleMillis - SystemClock.uptimeMillis();
+        if (delay <= 0) {
+            notifyMerged(subscription);
+            return;
+        }
+        subscription.pendingFlush = () -> {
+            subscription.pendingFlush = null;
+            notifyMerged(subscription);
+        };
+        subscription.handler.postDelayed(subscription.pendingFlush, delay);
+    }
+
+    /**
+     * Sends everything that changed since the subscription's last notification. In delta mode the
+     * change set is computed by primary key against the results last sent; classes without a
+     * primary key get full snapshots.
+     */
+    private void notifyMerged(Subscription subscription) {
+        subscription.lastNotifiedAt = SystemClock.uptimeMillis();
+        RealmResults<DynamicRealmObject> results = subscription.results;
+        if (!results.isValid()) {
+            return;
+        }
+
+        long started = metrics.begin("onResultsChange");
+        Map<String, Object> map = newNotification(subscription, subscription.subscriberIds);
+
+        ClassSchema.Field key = subscription.deltas ? primaryKeyField(subscription.className) : null;
+        if (key == null) {
+            map.put("results", convert(results, subscription.projection));
+        } else {
+            Object[] keys = new Object[results.size()];
+            RealmRow row = new RealmRow();
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = key.read(row.wrap(results.get(i)));
+            }
+            if (subscription.sentKeys == null) {
+                map.put("results", convert(results, subscription.projection));
+            } else {
+                KeyedDiff diff = KeyedDiff.compute(subscription.sentKeys, keys, subscription.modifiedKeys);
+                map.put("deletions", diff.deletions);
+                map.put("insertions", diff.insertions);
+                map.put("insertedObjects", convert(results, diff.insertions, subscription.projection));
+                map.put("modifications", diff.modifications);
+                map.put("modifiedObjects", convert(results, diff.modifications, subscription.projection));
             }
+            subscription.sentKeys = keys;
+            subscription.modifiedKeys.clear();
+        }
+        subscription.notified = true;
+
+        invokeOnMainThread("onResultsChange", Collections.unmodifiableMap(map));
+        metrics.endNotification(started);
+    }
+
+    private ClassSchema.Field primaryKeyField(String className) {
+        ClassSchema schema = schemaCache.get(realm, className);
+        return schema.primaryKey == null ? null : schema.field(schema.primaryKey);
+    }
 
-            Object value = map.get(fieldName);
-            if (value instanceof List) {
-                RealmList newValue = new RealmList<>();
-                newValue.addAll((List) value);
-                value = newValue;
+    /**
+     * Converts a single object and counts it in the metrics.
+     */
+    private HashMap objectToMap(DynamicRealmObject object, FieldProjection projection) {
+        ClassSchema schema = schemaCache.get(realm, object.getType());
+        HashMap map = objectToMap(object, schema.select(projection));
+        if (metrics.isEnabled()) {
+            metrics.recordConverted(1, Metrics.estimateSize(map));
+        }
+        return map;
+    }
+
+    private HashMap objectToMap(DynamicRealmObject object, ClassSchema.Field[] fields) {
+        return ClassSchema.toMap(new RealmRow(object), fields);
+    }
+
+    private void mapToObject(DynamicRealmObject object, Map map) throws IOException {
+        schemaCache.get(realm, object.getType()).write(new RealmRow(object), map, externalWriter);
+    }
+
+    /**
+     * Puts the converted results under "results", or with {"format": "columnar"} the single buffer
+     * built by {@link ColumnarEncoder} under "columnar".
+     */
+    private void putResults(DynamicRealm realm, Map map, String className, RealmResults<DynamicRealmObject> results, int size, Map arguments) {
+        FieldProjection projection = FieldProjection.fromArguments(arguments);
+        if ("columnar".equals(arguments.get("format"))) {
+            byte[] columnar = ColumnarEncoder.encode(results, size, schemaCache.get(realm, className).select(projection));
+            if (metrics.isEnabled()) {
+                metrics.recordConverted(size, columnar.length);
             }
-            object.set(fieldName, value);
+            map.put("columnar", columnar);
+        } else {
+            map.put("results", convert(realm, results, 0, size, projection));
+        }
+    }
+
+    private static int pageSize(int count, int limit) {
+        return limit >= 0 && limit < count ? limit : count;
+    }
+
+    /**
+     * Moves {@code value} into the BlobStore and points the row at it. Must run inside a transaction.
+     */
+    private void storeExternal(Row row, ClassSchema.Field field, byte[] value) throws IOException {
+        if (row.getInt(BlobStore.LENGTH_FIELD) > 0) {
+            // The blob being replaced stays in the store until it is compacted.
+            blobSpaceFreed = true;
         }
+        row.setNull(field.name);
+        if (value == null) {
+            row.setLong(BlobStore.OFFSET_FIELD, 0);
+            row.setInt(BlobStore.LENGTH_FIELD, 0);
+            return;
+        }
+        row.setLong(BlobStore.OFFSET_FIELD, blobStore.append(value));
+        row.setInt(BlobStore.LENGTH_FIELD, value.length);
+    }
+
+    private List convert(RealmResults<DynamicRealmObject> results, FieldProjection projection) {
+        return convert(results, results.size(), projection);
+    }
+
+    /**
+     * Converts the first {@code size} objects of {@code results}.
+     */
+    private List convert(RealmResults<DynamicRealmObject> results, int size, FieldProjection projection) {
+        return convert(realm, results, 0, size, projection);
+    }
+
+    /**
+     * Converts the objects of {@code results} from index {@code from} (inclusive) to {@code to}.
+     */
+    private List convert(DynamicRealm realm, RealmResults<DynamicRealmObject> results, int from, int to, FieldProjection projection) {
+        if (from >= to) {
+            return Collections.emptyList();
+        }
+        ClassSchema.Field[] fields = schemaCache.get(realm, results.get(from).getType()).select(projection);
+        ArrayList<Map> list = new ArrayList<>(to - from);
+        RealmRow row = new RealmRow();
+
+        for (int i = from; i < to; i++) {
+            list.add(ClassSchema.toMap(row.wrap(results.get(i)), fields));
+        }
+        recordConverted(list);
+        return Collections.unmodifiableList(list);
     }
 
-    private List convert(RealmResults<DynamicRealmObject> results) {
-        ArrayList<Map> list = new ArrayList<>();
+    private List convert(RealmResults<DynamicRealmObject> results, int[] indexes, FieldProjection projection) {
+        if (indexes.length == 0) {
+            return Collections.emptyList();
+        }
+        ArrayList<Map> list = new ArrayList<>(indexes.length);
+        ClassSchema.Field[] fields = schemaCache.get(realm, results.get(indexes[0]).getType()).select(projection);
 
-        for (DynamicRealmObject object : results) {
-            HashMap map = objectToMap(object);
-            list.add(map);
+        RealmRow row = new RealmRow();
+        for (int index : indexes) {
+            list.add(ClassSchema.toMap(row.wrap(results.get(index)), fields));
         }
+        recordConverted(list);
         return Collections.unmodifiableList(list);
     }
 
-    void reset() {
+    private void recordConverted(List<Map> objects) {
+        if (!metrics.isEnabled()) {
+            return;
+        }
+        long bytes = 0;
+        for (Map object : objects) {
+            bytes += Metrics.estimateSize(object);
+        }
+        metrics.recordConverted(objects.size(), bytes);
+    }
+
+    /**
+     * Writes pending updates, drops subscriptions and streams, closes the realm and stops the
+     * worker thread. Calls queued before this one are served first; later ones are rejected.
+     */
+    void close(final MethodChannel.Result result) {
+        closed = true;
+        runOnRealmThread(() -> {
+            release();
+            replyOnMainThread(result).success(null);
+            quitWorkerThread();
+        });
+    }
+
+    /**
+     * Deletes all objects, then closes like {@link #close(MethodChannel.Result)}. {@code onDone}
+     * runs on the platform main thread once the realm is closed; the main thread never waits for
+     * the worker, which may still be busy with a long import or compaction.
+     */
+    void reset(final Runnable onDone) {
+        closed = true;
+        runOnRealmThread(() -> {
+            if (realm != null) {
+                // Buffered updates would only touch objects about to be deleted.
+                writeBuffer.drain();
+                try {
+                    beginTransaction();
+                    realm.deleteAll();
+                    commitTransaction();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    if (realm.isInTransaction()) {
+                        cancelTransaction();
+                    }
+                }
+            }
+            if (blobStore != null) {
+                try {
+                    blobStore.clear();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            release();
+            runOnMainThread(onDone);
+            quitWorkerThread();
+        });
+    }
+
+    private void release() {
+        if (realm == null) {
+            return;
+        }
+        flushWrites();
+        if (pendingBlobReclaim != null) {
+            realmThreadHandler().removeCallbacks(pendingBlobReclaim);
+            pendingBlobReclaim = null;
+        }
+        for (Subscription subscription : sharedSubscriptions.values()) {
+            subscription.cancel();
+        }
         subscriptions.clear();
+        sharedSubscriptions.clear();
+        for (ResultStream stream : new ArrayList<>(streams.values())) {
+            closeStream(stream);
+        }
+        schemaCache.invalidate();
+        queryPlans.clear();
+        deletionJournal.shutdown();
 
-        realm.beginTransaction();
-        realm.deleteAll();
-        realm.commitTransaction();
+        closeBlobStore();
+        realm.close();
+        realm = null;
+        if (typedRealm != null) {
+            typedRealm.close();
+            typedRealm = null;
+        }
+    }
+
+    private void closeBlobStore() {
+        if (blobStore != null) {
+            try {
+                blobStore.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            blobStore = null;
+        }
+    }
+
+    private void quitWorkerThread() {
+        if (workerThread != null) {
+            // Called last on the worker itself, so nothing queued before is dropped.
+            workerThread.quit();
+        }
     }
 }
@@ -0,0 +1,76 @@
+package com.it_nomads.flutter_realm;
+
+import io.realm.DynamicRealm;
+import io.realm.DynamicRealmObject;
+import io.realm.RealmMigration;
+import io.realm.RealmObjectSchema;
+import io.realm.RealmSchema;
+
+/**
+ * Schema migrations for the classes this plugin defines. Bump {@link #SCHEMA_VERSION} and add a step
+ * whenever {@link Recording} or another plugin class changes.
+ */
+class FlutterRealmMigration implements RealmMigration {
+    static final long SCHEMA_VERSION = 4;
+
+    @Override
+    public void migrate(DynamicRealm realm, long oldVersion, long newVersion) {
+        RealmSchema schema = realm.getSchema();
+
+        if (oldVersion < 1) {
+            // Thumbnail references into the BlobStore. Added whether or not the store is enabled:
+            // Recording declares them, and Realm refuses to open a file whose schema lacks fields of
+            // its model classes. Unused, they hold zeros, which Realm packs into zero-bit-wide
+            // integer arrays, so they cost next to nothing per row.
+            RealmObjectSchema recording = schema.get(Recording.CLASS_NAME);
+            if (recording != null && !recording.hasField(BlobStore.OFFSET_FIELD)) {
+                recording.addField(BlobStore.OFFSET_FIELD, long.class)
+                        .addField(BlobStore.LENGTH_FIELD, int.class);
+            }
+            oldVersion = 1;
+        }
+
+        if (oldVersion < 2) {
+            // Title search index. Its rows for the recordings that already exist are built by the
+            // step to version 4.
+            if (!schema.contains(SearchIndex.TOKEN_CLASS_NAME)) {
+                SearchIndex.createSchema(schema);
+            }
+            oldVersion = 2;
+        }
+
+        if (oldVersion < 3) {
+            // Per-schedule summaries, computed from the recordings that already exist.
+            if (!schema.contains(ScheduleSummaries.CLASS_NAME)) {
+                ScheduleSummaries.createSchema(schema);
+            }
+            if (schema.contains(Recording.CLASS_NAME)) {
+                ScheduleSummaries.rebuild(realm);
+            }
+            oldVersion = 3;
+        }
+
+        if (oldVersion < 4) {
+            // Search rows for the existing recordings, rebuilt without one-letter prefixes and with
+            // whole-token matches deciding the position.
+            if (schema.contains(Recording.CLASS_NAME)) {
+                realm.delete(SearchIndex.TOKEN_CLASS_NAME);
+                for (DynamicRealmObject recording : realm.where(Recording.CLASS_NAME).findAll()) {
+                    SearchIndex.index(realm, recording.getString("uuid"), recording.getString(SearchIndex.FIELD));
+                }
+            }
+            oldVersion = 4;
+        }
+    }
+
+    // Realm refuses to open one file with configurations that differ, including their migrations.
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof FlutterRealmMigration;
+    }
+
+    @Override
+    public int hashCode() {
+        return FlutterRealmMigration.class.hashCode();
+    }
+}
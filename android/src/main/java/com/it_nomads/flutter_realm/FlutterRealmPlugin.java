@@ -4,7 +4,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
@@ -14,8 +16,9 @@ import io.realm.Realm;
 
 public class FlutterRealmPlugin implements MethodCallHandler {
 
-    private FlutterRealmPlugin(MethodChannel channel) {
+    private FlutterRealmPlugin(MethodChannel channel, BinaryMessenger messenger) {
         this.channel = channel;
+        this.messenger = messenger;
     }
 
     public static void registerWith(Registrar registrar) {
@@ -23,12 +26,14 @@ public class FlutterRealmPlugin implements MethodCallHandler {
 
         final MethodChannel channel = new MethodChannel(registrar.messenger(), "plugins.it_nomads.com/flutter_realm");
 
-        FlutterRealmPlugin plugin = new FlutterRealmPlugin(channel);
+        FlutterRealmPlugin plugin = new FlutterRealmPlugin(channel, registrar.messenger());
         channel.setMethodCallHandler(plugin);
     }
 
-    private HashMap<String, FlutterRealm> realms = new HashMap<>();
+    // Each realm serves its calls on its own thread, so realms are looked up concurrently with them.
+    private final ConcurrentHashMap<String, FlutterRealm> realms = new ConcurrentHashMap<>();
     private final MethodChannel channel;
+    private final BinaryMessenger messenger;
 
     @Override
     public void onMethodCall(MethodCall call, Result result) {
@@ -44,6 +49,15 @@ public class FlutterRealmPlugin implements MethodCallHandler {
                 case "reset":
                     onReset(result);
                     break;
+                case "close": {
+                    FlutterRealm flutterRealm = realms.remove((String) arguments.get("realmId"));
+                    if (flutterRealm == null) {
+                        result.success(null);
+                        return;
+                    }
+                    flutterRealm.close(result);
+                    break;
+                }
                 default: {
                     String realmId = (String) arguments.get("realmId");
                     FlutterRealm flutterRealm = realms.get(realmId);
@@ -65,17 +79,40 @@ public class FlutterRealmPlugin implements MethodCallHandler {
 
     private void onInitialize(Result result, Map arguments) {
         String realmId = (String) arguments.get("realmId");
-        FlutterRealm flutterRealm = new FlutterRealm(channel, realmId, arguments);
+        if (realms.containsKey(realmId)) {
+            result.error("Realm already initialized", realmId, null);
+            return;
+        }
+        FlutterRealm flutterRealm = new FlutterRealm(channel, messenger, realmId, arguments);
         realms.put(realmId, flutterRealm);
-        result.success(null);
+        flutterRealm.open(result);
     }
 
-    private void onReset(Result result) {
-        for (FlutterRealm realm : realms.values()) {
-            realm.reset();
+    /**
+     * Resets every realm on its own thread and replies once all of them are done. Runs on the
+     * platform main thread, as do the callbacks counting down {@code remaining}.
+     */
+    private void onReset(final Result result) {
+        // Unregister first, so no new call reaches a realm while it is being reset.
+        ArrayList<FlutterRealm> resetting = new ArrayList<>();
+        for (String realmId : new ArrayList<>(realms.keySet())) {
+            FlutterRealm realm = realms.remove(realmId);
+            if (realm != null) {
+                resetting.add(realm);
+            }
+        }
+        if (resetting.isEmpty()) {
+            result.success(null);
+            return;
+        }
+        final int[] remaining = {resetting.size()};
+        for (FlutterRealm realm : resetting) {
+            realm.reset(() -> {
+                if (--remaining[0] == 0) {
+                    result.success(null);
+                }
+            });
         }
-        realms.clear();
-        result.success(null);
     }
 
 
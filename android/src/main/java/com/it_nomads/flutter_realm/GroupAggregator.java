@@ -0,0 +1,155 @@
+package com.it_nomads.flutter_realm;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.realm.RealmFieldType;
+
+/**
+ * Evaluates "aggregate" with a groupBy field in one pass over the results, keeping running totals
+ * per group value instead of querying every group. Values match the native RealmResults
+ * aggregates used without groupBy: nulls are skipped, INTEGER sums are longs and other sums
+ * doubles, the average of no values is 0, and DATE min/max are reported as milliseconds.
+ * Groups are reported in the order their first row was added.
+ */
+class GroupAggregator {
+    private final String[] functions;
+    // Field of each aggregate, or null for "count".
+    private final ClassSchema.Field[] fields;
+    private final LinkedHashMap<Object, Group> groups = new LinkedHashMap<>();
+
+    GroupAggregator(String[] functions, ClassSchema.Field[] fields) throws Exception {
+        for (int i = 0; i < functions.length; i++) {
+            check(functions[i], fields[i]);
+        }
+        this.functions = functions;
+        this.fields = fields;
+    }
+
+    static void checkGroupField(ClassSchema.Field field) throws Exception {
+        switch (field.type) {
+            case STRING:
+            case INTEGER:
+            case BOOLEAN:
+            case DATE:
+                return;
+            default:
+                throw new Exception("Unsupported group by type: " + field.type);
+        }
+    }
+
+    private static void check(String function, ClassSchema.Field field) throws Exception {
+        if (function.equals("count")) {
+            return;
+        }
+        boolean numeric = field.type == RealmFieldType.INTEGER || field.type == RealmFieldType.FLOAT
+                || field.type == RealmFieldType.DOUBLE;
+        switch (function) {
+            case "sum":
+            case "avg":
+                if (numeric) {
+                    return;
+                }
+                break;
+            case "min":
+            case "max":
+                if (numeric || field.type == RealmFieldType.DATE) {
+                    return;
+                }
+                break;
+            default:
+                throw new Exception("Unknown aggregate: " + function);
+        }
+        throw new Exception("Can't " + function + " " + field.type + " field " + field.name);
+    }
+
+    /**
+     * Adds one row of {@code group} whose aggregated fields hold {@code values}, in aggregate order.
+     */
+    void add(Object group, Object[] values) {
+        Group totals = groups.get(group);
+        if (totals == null) {
+            totals = new Group(functions.length);
+            groups.put(group, totals);
+        }
+        totals.count++;
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (fields[i] == null || value == null) {
+                continue;
+            }
+            totals.nonNull[i]++;
+            if (value instanceof Long) {
+                totals.longSums[i] += (Long) value;
+            } else if (value instanceof Number) {
+                totals.doubleSums[i] += ((Number) value).doubleValue();
+            }
+            if (totals.min[i] == null || ((Comparable) value).compareTo(totals.min[i]) < 0) {
+                totals.min[i] = value;
+            }
+            if (totals.max[i] == null || ((Comparable) value).compareTo(totals.max[i]) > 0) {
+                totals.max[i] = value;
+            }
+        }
+    }
+
+    /**
+     * One {@code {"group", "values"}} row per group.
+     */
+    List<Map> rows() {
+        ArrayList<Map> rows = new ArrayList<>(groups.size());
+        for (Map.Entry<Object, Group> entry : groups.entrySet()) {
+            Group totals = entry.getValue();
+            ArrayList<Object> values = new ArrayList<>(functions.length);
+            for (int i = 0; i < functions.length; i++) {
+                values.add(totals.value(functions[i], fields[i], i));
+            }
+            HashMap<String, Object> row = new HashMap<>();
+            row.put("group", toChannel(entry.getKey()));
+            row.put("values", values);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static Object toChannel(Object value) {
+        return value instanceof Date ? ((Date) value).getTime() : value;
+    }
+
+    private static final class Group {
+        int count;
+        final long[] nonNull;
+        final long[] longSums;
+        final double[] doubleSums;
+        final Object[] min;
+        final Object[] max;
+
+        Group(int size) {
+            nonNull = new long[size];
+            longSums = new long[size];
+            doubleSums = new double[size];
+            min = new Object[size];
+            max = new Object[size];
+        }
+
+        Object value(String function, ClassSchema.Field field, int i) {
+            boolean integer = field != null && field.type == RealmFieldType.INTEGER;
+            switch (function) {
+                case "count":
+                    return count;
+                case "sum":
+                    return integer ? (Object) longSums[i] : (Object) doubleSums[i];
+                case "avg":
+                    return nonNull[i] == 0 ? 0.0 : (integer ? longSums[i] : doubleSums[i]) / nonNull[i];
+                case "min":
+                    return toChannel(min[i]);
+                default:
+                    return toChannel(max[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.it_nomads.flutter_realm;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Change set between two versions of an ordered result, computed from primary keys. Used when
+ * several Realm change sets are merged into one notification, where the individual index-based
+ * change sets can't simply be concatenated.
+ *
+ * Indexes follow {@link io.realm.OrderedCollectionChangeSet}: deletions refer to the old keys,
+ * insertions and modifications to the new ones. Objects whose relative order changed are reported
+ * as a deletion plus an insertion, keeping the longest run of objects that stayed in order.
+ */
+class KeyedDiff {
+    final int[] deletions;
+    final int[] insertions;
+    final int[] modifications;
+
+    private KeyedDiff(int[] deletions, int[] insertions, int[] modifications) {
+        this.deletions = deletions;
+        this.insertions = insertions;
+        this.modifications = modifications;
+    }
+
+    static KeyedDiff compute(Object[] oldKeys, Object[] newKeys, Set<Object> modifiedKeys) {
+        Map<Object, Integer> newIndexes = new HashMap<>(newKeys.length * 2);
+        for (int i = 0; i < newKeys.length; i++) {
+            newIndexes.put(newKeys[i], i);
+        }
+
+        // New positions of the objects that survived, in their old order.
+        int[] survivors = new int[oldKeys.length];
+        int survivorCount = 0;
+        for (Object key : oldKeys) {
+            Integer index = newIndexes.get(key);
+            if (index != null) {
+                survivors[survivorCount++] = index;
+            }
+        }
+        boolean[] kept = new boolean[newKeys.length];
+        for (int index : longestIncreasingRun(survivors, survivorCount)) {
+            kept[index] = true;
+        }
+
+        int[] deletions = new int[oldKeys.length];
+        int deletionCount = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            Integer index = newIndexes.get(oldKeys[i]);
+            if (index == null || !kept[index]) {
+                deletions[deletionCount++] = i;
+            }
+        }
+
+        Set<Object> oldKeySet = new HashSet<>(Arrays.asList(oldKeys));
+        int[] insertions = new int[newKeys.length];
+        int insertionCount = 0;
+        int[] modifications = new int[newKeys.length];
+        int modificationCount = 0;
+        for (int i = 0; i < newKeys.length; i++) {
+            if (!kept[i] || !oldKeySet.contains(newKeys[i])) {
+                insertions[insertionCount++] = i;
+            } else if (modifiedKeys.contains(newKeys[i])) {
+                modifications[modificationCount++] = i;
+            }
+        }
+
+        return new KeyedDiff(
+                Arrays.copyOf(deletions, deletionCount),
+                Arrays.copyOf(insertions, insertionCount),
+                Arrays.copyOf(modifications, modificationCount));
+    }
+
+    /**
+     * Returns the values of a longest strictly increasing subsequence of the first {@code count}
+     * values.
+     */
+    private static int[] longestIncreasingRun(int[] values, int count) {
+        int[] tails = new int[count];
+        int[] previous = new int[count];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[tails[middle]] < values[i]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+
+        int[] run = new int[length];
+        for (int i = length - 1, k = length > 0 ? tails[length - 1] : -1; i >= 0; i--, k = previous[k]) {
+            run[i] = values[k];
+        }
+        return run;
+    }
+}
@@ -0,0 +1,273 @@
+package com.it_nomads.flutter_realm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.realm.DynamicRealmObject;
+import io.realm.RealmFieldType;
+import io.realm.RealmQuery;
+import io.realm.RealmResults;
+import io.realm.Sort;
+
+/**
+ * Keyset pagination over a multi-field sort given as {@code [[field, ascending], ...]}.
+ *
+ * A cursor holds the sort values of the last row of a page; the next page is the rows that sort
+ * after it, expressed as a query condition, so no earlier row is materialized or skipped. Realm
+ * can't compare strings by order, so a STRING field may only be the last sort field. It then
+ * breaks ties by exclusion: the cursor also lists the keys already returned for the current values
+ * of the other fields. The sort should end with a unique field, typically the primary key.
+ */
+class KeysetCursor {
+    private final ClassSchema.Field[] fields;
+    private final boolean[] ascending;
+    // Last sort field when it is a STRING; otherwise null and every field is compared.
+    private final ClassSchema.Field tieKey;
+
+    KeysetCursor(ClassSchema.Field[] fields, boolean[] ascending, ClassSchema.Field tieKey) {
+        this.fields = fields;
+        this.ascending = ascending;
+        this.tieKey = tieKey;
+    }
+
+    static KeysetCursor compile(ClassSchema schema, List<List> sort) throws Exception {
+        if (sort.isEmpty()) {
+            throw new Exception("Empty sort");
+        }
+        int count = sort.size();
+        ClassSchema.Field last = schema.field((String) sort.get(count - 1).get(0));
+        ClassSchema.Field tieKey = last != null && last.type == RealmFieldType.STRING ? last : null;
+        int compared = tieKey == null ? count : count - 1;
+        if (compared == 0) {
+            throw new Exception("Keyset pagination needs a number or date sort field before the string one");
+        }
+
+        ClassSchema.Field[] fields = new ClassSchema.Field[compared];
+        boolean[] ascending = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            String name = (String) sort.get(i).get(0);
+            ascending[i] = !Boolean.FALSE.equals(sort.get(i).get(1));
+            if (i == compared) {
+                break;
+            }
+            ClassSchema.Field field = schema.field(name);
+            if (field == null) {
+                throw new Exception("Unknown field: " + name);
+            }
+            switch (field.type) {
+                case INTEGER:
+                case FLOAT:
+                case DOUBLE:
+                case DATE:
+                    fields[i] = field;
+                    break;
+                default:
+                    throw new Exception("Can't page by " + field.type + " field " + name + " unless it is the last sort field");
+            }
+        }
+        return new KeysetCursor(fields, ascending, tieKey);
+    }
+
+    RealmQuery<DynamicRealmObject> sort(RealmQuery<DynamicRealmObject> query) {
+        int count = ascending.length;
+        String[] names = new String[count];
+        Sort[] orders = new Sort[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = i < fields.length ? fields[i].name : tieKey.name;
+            orders[i] = ascending[i] ? Sort.ASCENDING : Sort.DESCENDING;
+        }
+        return query.sort(names, orders);
+    }
+
+    /**
+     * Restricts {@code query} to the rows after {@code cursor}.
+     */
+    RealmQuery<DynamicRealmObject> after(RealmQuery<DynamicRealmObject> query, Map cursor) {
+        List<List<Clause>> groups = conditionsAfter(cursor);
+        if (groups.isEmpty()) {
+            // Nothing sorts after the cursor.
+            return query.isNull(fields[0].name).isNotNull(fields[0].name);
+        }
+        query = query.beginGroup();
+        for (int i = 0; i < groups.size(); i++) {
+            if (i > 0) {
+                query = query.or();
+            }
+            query = query.beginGroup();
+            for (Clause clause : groups.get(i)) {
+                query = clause.apply(query);
+            }
+            query = query.endGroup();
+        }
+        return query.endGroup();
+    }
+
+    /**
+     * The rows after {@code cursor} as alternatives, each a list of clauses that must all hold.
+     * Empty when nothing sorts after the cursor.
+     */
+    List<List<Clause>> conditionsAfter(Map cursor) {
+        List values = (List) cursor.get("values");
+        List tieKeys = (List) cursor.get("tieKeys");
+
+        // (f0 > v0) OR (f0 == v0 AND f1 > v1) OR ... OR (all equal AND tie key not yet returned)
+        List<List<Clause>> groups = new ArrayList<>();
+        for (int i = 0; i <= fields.length; i++) {
+            boolean last = i == fields.length;
+            if (last && tieKey == null) {
+                break;
+            }
+            Object value = last ? null : values.get(i);
+            if (!last && value == null && !ascending[i]) {
+                // Nulls sort last in descending order, so nothing comes after null.
+                continue;
+            }
+            List<Clause> group = new ArrayList<>(i + 1);
+            for (int j = 0; j < i; j++) {
+                Object previous = values.get(j);
+                group.add(new Clause(fields[j], previous == null ? Clause.Op.IS_NULL : Clause.Op.EQUAL_TO, previous));
+            }
+            if (last) {
+                if (tieKeys != null && !tieKeys.isEmpty()) {
+                    group.add(new Clause(tieKey, Clause.Op.NOT_IN, tieKeys.toArray(new String[0])));
+                }
+            } else if (value == null) {
+                // Nulls sort first in ascending order, so every value comes after null.
+                group.add(new Clause(fields[i], Clause.Op.IS_NOT_NULL, null));
+            } else if (ascending[i]) {
+                group.add(new Clause(fields[i], Clause.Op.GREATER_THAN, value));
+            } else {
+                // Nulls sort last in descending order, so they come after every value.
+                group.add(new Clause(fields[i], fields[i].nullable ? Clause.Op.LESS_THAN_OR_NULL : Clause.Op.LESS_THAN, value));
+            }
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    /**
+     * Cursor for the row at {@code index} of {@code results}, carrying over the tie keys of
+     * {@code previous} while the tie group continues across pages.
+     */
+    Map<String, Object> cursorAt(RealmResults<DynamicRealmObject> results, int index, Map previous) {
+        List<Object> values = valuesOf(results.get(index));
+        HashMap<String, Object> cursor = new HashMap<>();
+        cursor.put("values", Collections.unmodifiableList(values));
+        if (tieKey != null) {
+            List<Object> tieKeys = new ArrayList<>();
+            if (previous != null && sameValues((List) previous.get("values"), values) && previous.get("tieKeys") != null) {
+                tieKeys.addAll((List) previous.get("tieKeys"));
+            }
+            for (int i = index; i >= 0 && sameValues(valuesOf(results.get(i)), values); i--) {
+                tieKeys.add(tieKey.read(results.get(i)));
+            }
+            cursor.put("tieKeys", Collections.unmodifiableList(tieKeys));
+        }
+        return cursor;
+    }
+
+    private List<Object> valuesOf(DynamicRealmObject row) {
+        List<Object> values = new ArrayList<>(fields.length);
+        for (ClassSchema.Field field : fields) {
+            values.add(toChannel(field.read(row)));
+        }
+        return values;
+    }
+
+    /**
+     * Compares sort values numerically, since values that went through the channel may come back
+     * as Integer where the row holds a Long.
+     */
+    private boolean sameValues(List a, List b) {
+        if (a == null || b == null || a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            Object x = a.get(i);
+            Object y = b.get(i);
+            if (x == null || y == null) {
+                if (x != y) {
+                    return false;
+                }
+            } else if (fields[i].type == RealmFieldType.FLOAT || fields[i].type == RealmFieldType.DOUBLE
+                    ? ((Number) x).doubleValue() != ((Number) y).doubleValue()
+                    : ((Number) x).longValue() != ((Number) y).longValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object toChannel(Object value) {
+        return value instanceof Date ? ((Date) value).getTime() : value;
+    }
+
+    /**
+     * One condition on a field. Values are sort values as sent over the channel (DATE fields as
+     * milliseconds), or the tie keys for {@link Op#NOT_IN}.
+     */
+    static final class Clause {
+        enum Op {IS_NULL, IS_NOT_NULL, EQUAL_TO, GREATER_THAN, LESS_THAN, LESS_THAN_OR_NULL, NOT_IN}
+
+        final ClassSchema.Field field;
+        final Op op;
+        final Object value;
+
+        Clause(ClassSchema.Field field, Op op, Object value) {
+            this.field = field;
+            this.op = op;
+            this.value = value;
+        }
+
+        RealmQuery<DynamicRealmObject> apply(RealmQuery<DynamicRealmObject> query) {
+            switch (op) {
+                case IS_NULL:
+                    return query.isNull(field.name);
+                case IS_NOT_NULL:
+                    return query.isNotNull(field.name);
+                case EQUAL_TO:
+                    return equalTo(query, field, (Number) value);
+                case GREATER_THAN:
+                    return compare(query, field, (Number) value, true);
+                case LESS_THAN:
+                    return compare(query, field, (Number) value, false);
+                case LESS_THAN_OR_NULL:
+                    return compare(query.beginGroup(), field, (Number) value, false).or().isNull(field.name).endGroup();
+                default:
+                    return query.not().in(field.name, (String[]) value);
+            }
+        }
+    }
+
+    private static RealmQuery<DynamicRealmObject> equalTo(RealmQuery<DynamicRealmObject> query, ClassSchema.Field field, Number number) {
+        switch (field.type) {
+            case INTEGER:
+                return query.equalTo(field.name, number.longValue());
+            case FLOAT:
+                return query.equalTo(field.name, number.floatValue());
+            case DOUBLE:
+                return query.equalTo(field.name, number.doubleValue());
+            default:
+                return query.equalTo(field.name, new Date(number.longValue()));
+        }
+    }
+
+    private static RealmQuery<DynamicRealmObject> compare(RealmQuery<DynamicRealmObject> query, ClassSchema.Field field, Number number,
+                                                          boolean greater) {
+        switch (field.type) {
+            case INTEGER:
+                return greater ? query.greaterThan(field.name, number.longValue()) : query.lessThan(field.name, number.longValue());
+            case FLOAT:
+                return greater ? query.greaterThan(field.name, number.floatValue()) : query.lessThan(field.name, number.floatValue());
+            case DOUBLE:
+                return greater ? query.greaterThan(field.name, number.doubleValue()) : query.lessThan(field.name, number.doubleValue());
+            default:
+                Date date = new Date(number.longValue());
+                return greater ? query.greaterThan(field.name, date) : query.lessThan(field.name, date);
+        }
+    }
+}
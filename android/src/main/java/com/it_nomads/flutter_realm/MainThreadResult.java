@@ -0,0 +1,34 @@
+package com.it_nomads.flutter_realm;
+
+import android.os.Handler;
+
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * Forwards a {@link MethodChannel.Result} reply to the platform main thread, which is the only
+ * thread the Flutter engine accepts channel replies on.
+ */
+class MainThreadResult implements MethodChannel.Result {
+    private final MethodChannel.Result result;
+    private final Handler handler;
+
+    MainThreadResult(MethodChannel.Result result, Handler handler) {
+        this.result = result;
+        this.handler = handler;
+    }
+
+    @Override
+    public void success(final Object value) {
+        handler.post(() -> result.success(value));
+    }
+
+    @Override
+    public void error(final String errorCode, final String errorMessage, final Object errorDetails) {
+        handler.post(() -> result.error(errorCode, errorMessage, errorDetails));
+    }
+
+    @Override
+    public void notImplemented() {
+        handler.post(() -> result.notImplemented());
+    }
+}
@@ -0,0 +1,203 @@
+package com.it_nomads.flutter_realm;
+
+import android.os.Build;
+import android.os.Debug;
+import android.os.Trace;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Latency histograms and volume counters of one realm, returned by the "metrics" method. When
+ * tracing is on, timed sections also show up in systrace/Perfetto captures as "FlutterRealm:<name>".
+ *
+ * Timings use log2 buckets of microseconds, so percentiles are upper bounds within a factor of two.
+ */
+class Metrics {
+    private final boolean enabled;
+    private final boolean tracing;
+
+    private final Map<String, Histogram> methods = new HashMap<>();
+    private final Histogram notifications = new Histogram();
+    private final Histogram transactions = new Histogram();
+    private long objectsConverted;
+    private long payloadBytes;
+
+    Metrics(boolean enabled, boolean tracing) {
+        this.enabled = enabled;
+        this.tracing = tracing;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts a timed section; pass the result to the matching end call on the same thread.
+     */
+    long begin(String name) {
+        if (!enabled) {
+            return 0;
+        }
+        // Checked inline rather than in the constructor, so lint can see the guard.
+        if (tracing && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection("FlutterRealm:" + name);
+        }
+        return System.nanoTime();
+    }
+
+    void endMethod(String method, long startNanos) {
+        if (!enabled) {
+            return;
+        }
+        long micros = end(startNanos);
+        synchronized (this) {
+            Histogram histogram = methods.get(method);
+            if (histogram == null) {
+                histogram = new Histogram();
+                methods.put(method, histogram);
+            }
+            histogram.record(micros);
+        }
+    }
+
+    void endNotification(long startNanos) {
+        if (!enabled) {
+            return;
+        }
+        long micros = end(startNanos);
+        synchronized (this) {
+            notifications.record(micros);
+        }
+    }
+
+    /**
+     * Records how long a write transaction was held. Not a trace section, since transactions may end
+     * in a different call than they started in.
+     */
+    synchronized void recordTransaction(long startNanos) {
+        if (enabled) {
+            transactions.record((System.nanoTime() - startNanos) / 1000);
+        }
+    }
+
+    /**
+     * Counts one conversion of {@code objects} objects. Callers check {@link #isEnabled()} first and
+     * record once per batch, so the conversion loop itself takes no lock.
+     */
+    synchronized void recordConverted(int objects, long bytes) {
+        if (enabled) {
+            objectsConverted += objects;
+            payloadBytes += bytes;
+        }
+    }
+
+    private long end(long startNanos) {
+        if (tracing && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+        return (System.nanoTime() - startNanos) / 1000;
+    }
+
+    /**
+     * Rough size of a value on the channel: payload bytes of strings and blobs, 8 for anything else.
+     */
+    static long estimateSize(Object value) {
+        if (value instanceof String) {
+            return ((String) value).length();
+        } else if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        return 8;
+    }
+
+    /**
+     * {@link #estimateSize(Object)} summed over the values of a converted object.
+     */
+    static long estimateSize(Map<?, ?> object) {
+        long bytes = 0;
+        for (Object value : object.values()) {
+            if (value != null) {
+                bytes += estimateSize(value);
+            }
+        }
+        return bytes;
+    }
+
+    synchronized Map<String, Object> snapshot() {
+        HashMap<String, Object> methodMap = new HashMap<>();
+        for (Map.Entry<String, Histogram> entry : methods.entrySet()) {
+            methodMap.put(entry.getKey(), entry.getValue().toMap());
+        }
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("enabled", enabled);
+        map.put("methods", methodMap);
+        map.put("notifications", notifications.toMap());
+        map.put("transactions", transactions.toMap());
+        map.put("objectsConverted", objectsConverted);
+        map.put("payloadBytes", payloadBytes);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            // Java heap bytes allocated by the whole process so far; diff two snapshots to use it.
+            String allocated = Debug.getRuntimeStat("art.gc.bytes-allocated");
+            if (allocated != null) {
+                map.put("runtimeBytesAllocated", Long.parseLong(allocated));
+            }
+        }
+        return map;
+    }
+
+    synchronized void reset() {
+        methods.clear();
+        notifications.clear();
+        transactions.clear();
+        objectsConverted = 0;
+        payloadBytes = 0;
+    }
+
+    private static class Histogram {
+        // Bucket i counts samples below 2^i microseconds; the last one takes everything above.
+        private final long[] buckets = new long[32];
+        private long count;
+        private long totalMicros;
+        private long maxMicros;
+
+        void record(long micros) {
+            int bucket = 64 - Long.numberOfLeadingZeros(micros);
+            buckets[Math.min(bucket, buckets.length - 1)]++;
+            count++;
+            totalMicros += micros;
+            maxMicros = Math.max(maxMicros, micros);
+        }
+
+        void clear() {
+            Arrays.fill(buckets, 0);
+            count = 0;
+            totalMicros = 0;
+            maxMicros = 0;
+        }
+
+        private long percentile(double fraction) {
+            long rank = (long) Math.ceil(count * fraction);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(1L << i, maxMicros);
+                }
+            }
+            return maxMicros;
+        }
+
+        Map<String, Object> toMap() {
+            HashMap<String, Object> map = new HashMap<>();
+            map.put("count", count);
+            map.put("totalMicros", totalMicros);
+            map.put("maxMicros", maxMicros);
+            map.put("p50Micros", percentile(0.5));
+            map.put("p90Micros", percentile(0.9));
+            map.put("p99Micros", percentile(0.99));
+            return map;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.it_nomads.flutter_realm;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads newline-delimited JSON objects from a file through one reused buffer, keeping track of the
+ * byte offset after the last record so an import can resume from there.
+ */
+class NdjsonReader implements Closeable {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private byte[] line = new byte[1024];
+    private int lineLength;
+    private long position;
+
+    NdjsonReader(File file, long offset) throws IOException {
+        channel = new FileInputStream(file).getChannel();
+        channel.position(offset);
+        position = offset;
+        buffer.flip();
+    }
+
+    /**
+     * Offset just past the last record returned by {@link #next()}.
+     */
+    long position() {
+        return position;
+    }
+
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * The next record, or null at the end of the file. Blank lines are skipped.
+     */
+    Map<String, Object> next() throws IOException, JSONException {
+        long consumed = 0;
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+                int read = channel.read(buffer);
+                buffer.flip();
+                if (read < 0) {
+                    position += consumed;
+                    // Null for a blank last line too.
+                    return lineLength == 0 ? null : parseLine();
+                }
+            }
+            byte b = buffer.get();
+            consumed++;
+            if (b == '\n') {
+                Map<String, Object> record = lineLength == 0 ? null : parseLine();
+                if (record == null) {
+                    continue;
+                }
+                position += consumed;
+                return record;
+            }
+            if (lineLength == line.length) {
+                byte[] grown = new byte[line.length * 2];
+                System.arraycopy(line, 0, grown, 0, lineLength);
+                line = grown;
+            }
+            line[lineLength++] = b;
+        }
+    }
+
+    /**
+     * The record on the current line, or null if it is blank, e.g. only spaces or the \r of a CRLF
+     * line ending.
+     */
+    private Map<String, Object> parseLine() throws JSONException {
+        String text = new String(line, 0, lineLength, UTF_8).trim();
+        lineLength = 0;
+        return text.isEmpty() ? null : toMap(new JSONObject(text));
+    }
+
+    private static Map<String, Object> toMap(JSONObject object) {
+        HashMap<String, Object> map = new HashMap<>();
+        Iterator<String> keys = object.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            map.put(key, toValue(object.opt(key)));
+        }
+        return map;
+    }
+
+    private static Object toValue(Object value) {
+        if (value == JSONObject.NULL) {
+            return null;
+        } else if (value instanceof JSONObject) {
+            return toMap((JSONObject) value);
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            List<Object> list = new ArrayList<>(array.length());
+            for (int i = 0; i < array.length(); i++) {
+                list.add(toValue(array.opt(i)));
+            }
+            return list;
+        }
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
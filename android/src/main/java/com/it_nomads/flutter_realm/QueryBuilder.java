@@ -0,0 +1,90 @@
+package com.it_nomads.flutter_realm;
+
+import java.util.Date;
+
+/**
+ * The conditions a {@link QueryPlan} binds, named and typed as on {@link io.realm.RealmQuery}.
+ * Queries of a realm are wrapped in a {@link RealmQueryBuilder}; the JVM benchmarks in
+ * {@code android/benchmark} bind into a builder of their own.
+ */
+interface QueryBuilder {
+    void and();
+
+    void or();
+
+    void isNull(String fieldName);
+
+    void isNotNull(String fieldName);
+
+    void equalTo(String fieldName, Long value);
+
+    void equalTo(String fieldName, Double value);
+
+    void equalTo(String fieldName, Float value);
+
+    void equalTo(String fieldName, Boolean value);
+
+    void equalTo(String fieldName, String value);
+
+    void equalTo(String fieldName, Date value);
+
+    void notEqualTo(String fieldName, Long value);
+
+    void notEqualTo(String fieldName, Double value);
+
+    void notEqualTo(String fieldName, Float value);
+
+    void notEqualTo(String fieldName, Boolean value);
+
+    void notEqualTo(String fieldName, String value);
+
+    void notEqualTo(String fieldName, Date value);
+
+    void greaterThan(String fieldName, long value);
+
+    void greaterThan(String fieldName, double value);
+
+    void greaterThan(String fieldName, float value);
+
+    void greaterThan(String fieldName, Date value);
+
+    void greaterThanOrEqualTo(String fieldName, long value);
+
+    void greaterThanOrEqualTo(String fieldName, double value);
+
+    void greaterThanOrEqualTo(String fieldName, float value);
+
+    void greaterThanOrEqualTo(String fieldName, Date value);
+
+    void lessThan(String fieldName, long value);
+
+    void lessThan(String fieldName, double value);
+
+    void lessThan(String fieldName, float value);
+
+    void lessThan(String fieldName, Date value);
+
+    void lessThanOrEqualTo(String fieldName, long value);
+
+    void lessThanOrEqualTo(String fieldName, double value);
+
+    void lessThanOrEqualTo(String fieldName, float value);
+
+    void lessThanOrEqualTo(String fieldName, Date value);
+
+    void between(String fieldName, long low, long high);
+
+    void between(String fieldName, double low, double high);
+
+    void between(String fieldName, float low, float high);
+
+    void between(String fieldName, Date low, Date high);
+
+    void contains(String fieldName, String value);
+
+    void beginsWith(String fieldName, String value);
+
+    void in(String fieldName, String[] values);
+
+    void in(String fieldName, Long[] values);
+}
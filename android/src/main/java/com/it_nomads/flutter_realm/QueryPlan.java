@@ -0,0 +1,307 @@
+package com.it_nomads.flutter_realm;
+
+import java.util.Date;
+import java.util.List;
+
+import io.realm.DynamicRealmObject;
+import io.realm.RealmFieldType;
+import io.realm.RealmQuery;
+
+/**
+ * A predicate compiled for one shape: the sequence of operators and field names. Each item is
+ * resolved once against the {@link ClassSchema} to a typed step, so later queries with the same
+ * shape only bind their argument values.
+ *
+ * Items are {@code [operator, fieldName, argument]} or {@code [operator]} for "and"/"or".
+ * "between" takes {@code [low, high]}, "in" a list, and DATE fields take milliseconds since epoch.
+ * "equalTo" and "notEqualTo" with a null argument match null and non-null values.
+ */
+class QueryPlan {
+    interface Step {
+        void apply(QueryBuilder query, Object argument);
+    }
+
+    final ClassSchema schema;
+    private final Step[] steps;
+
+    private QueryPlan(ClassSchema schema, Step[] steps) {
+        this.schema = schema;
+        this.steps = steps;
+    }
+
+    static String shapeOf(String className, List<List> predicate) {
+        StringBuilder builder = new StringBuilder(className);
+        for (List item : predicate) {
+            builder.append('|').append(item.get(0));
+            if (item.size() > 1) {
+                builder.append(':').append(item.get(1));
+            }
+        }
+        return builder.toString();
+    }
+
+    static QueryPlan compile(ClassSchema schema, List<List> predicate) {
+        Step[] steps = new Step[predicate.size()];
+        for (int i = 0; i < steps.length; i++) {
+            List item = predicate.get(i);
+            final String operator = (String) item.get(0);
+            if (item.size() < 2) {
+                steps[i] = compileStep(operator, null, null);
+                continue;
+            }
+            final String fieldName = (String) item.get(1);
+            ClassSchema.Field field = schema.field(fieldName);
+            if (field == null) {
+                // Not a direct field (e.g. a link path): pick the step from the argument on every bind.
+                steps[i] = (query, argument) -> compileStep(operator, fieldName, typeOfArgument(argument)).apply(query, argument);
+            } else {
+                steps[i] = compileStep(operator, fieldName, field.type);
+            }
+        }
+        return new QueryPlan(schema, steps);
+    }
+
+    RealmQuery<DynamicRealmObject> bind(RealmQuery<DynamicRealmObject> query, List<List> predicate) {
+        bind(new RealmQueryBuilder(query), predicate);
+        return query;
+    }
+
+    void bind(QueryBuilder query, List<List> predicate) {
+        for (int i = 0; i < steps.length; i++) {
+            List item = predicate.get(i);
+            steps[i].apply(query, item.size() > 2 ? item.get(2) : null);
+        }
+    }
+
+    private static RealmFieldType typeOfArgument(Object argument) {
+        if (argument instanceof List && !((List) argument).isEmpty()) {
+            argument = ((List) argument).get(0);
+        }
+        if (argument instanceof Integer || argument instanceof Long) {
+            return RealmFieldType.INTEGER;
+        } else if (argument instanceof Double) {
+            return RealmFieldType.DOUBLE;
+        } else if (argument instanceof Boolean) {
+            return RealmFieldType.BOOLEAN;
+        } else if (argument instanceof String) {
+            return RealmFieldType.STRING;
+        }
+        throw new IllegalArgumentException("Unsupported type");
+    }
+
+    private static Step compileStep(String operator, final String fieldName, RealmFieldType type) {
+        switch (operator) {
+            case "and":
+                return (query, argument) -> query.and();
+            case "or":
+                return (query, argument) -> query.or();
+            case "equalTo":
+                return compileEqualTo(fieldName, type, false);
+            case "notEqualTo":
+                return compileEqualTo(fieldName, type, true);
+            case "greaterThan":
+            case "greaterThanOrEqualTo":
+            case "lessThan":
+            case "lessThanOrEqualTo":
+                return compileComparison(operator, fieldName, type);
+            case "between":
+                return compileBetween(fieldName, type);
+            case "contains":
+                requireType(type, RealmFieldType.STRING);
+                return (query, argument) -> query.contains(fieldName, (String) argument);
+            case "beginsWith":
+                requireType(type, RealmFieldType.STRING);
+                return (query, argument) -> query.beginsWith(fieldName, (String) argument);
+            case "in":
+                if (type == RealmFieldType.STRING) {
+                    return (query, argument) -> query.in(fieldName, ((List<String>) argument).toArray(new String[0]));
+                }
+                requireType(type, RealmFieldType.INTEGER);
+                return (query, argument) -> {
+                    List values = (List) argument;
+                    Long[] longs = new Long[values.size()];
+                    for (int i = 0; i < longs.length; i++) {
+                        longs[i] = ((Number) values.get(i)).longValue();
+                    }
+                    query.in(fieldName, longs);
+                };
+            default:
+                throw new IllegalArgumentException("Unknown operator");
+        }
+    }
+
+    private static Step compileEqualTo(final String fieldName, RealmFieldType type, final boolean negate) {
+        final Step step = compileTypedEqualTo(fieldName, type, negate);
+        // The typed steps unbox their argument, so null is matched by nullness instead.
+        return (query, argument) -> {
+            if (argument == null) {
+                if (negate) {
+                    query.isNotNull(fieldName);
+                } else {
+                    query.isNull(fieldName);
+                }
+            } else {
+                step.apply(query, argument);
+            }
+        };
+    }
+
+    private static Step compileTypedEqualTo(final String fieldName, RealmFieldType type, final boolean negate) {
+        switch (type) {
+            case INTEGER:
+                return (query, argument) -> {
+                    Long value = ((Number) argument).longValue();
+                    if (negate) {
+                        query.notEqualTo(fieldName, value);
+                    } else {
+                        query.equalTo(fieldName, value);
+                    }
+                };
+            case DOUBLE:
+                return (query, argument) -> {
+                    Double value = ((Number) argument).doubleValue();
+                    if (negate) {
+                        query.notEqualTo(fieldName, value);
+                    } else {
+                        query.equalTo(fieldName, value);
+                    }
+                };
+            case FLOAT:
+                return (query, argument) -> {
+                    Float value = ((Number) argument).floatValue();
+                    if (negate) {
+                        query.notEqualTo(fieldName, value);
+                    } else {
+                        query.equalTo(fieldName, value);
+                    }
+                };
+            case BOOLEAN:
+                return (query, argument) -> {
+                    Boolean value = (Boolean) argument;
+                    if (negate) {
+                        query.notEqualTo(fieldName, value);
+                    } else {
+                        query.equalTo(fieldName, value);
+                    }
+                };
+            case STRING:
+                return (query, argument) -> {
+                    String value = (String) argument;
+                    if (negate) {
+                        query.notEqualTo(fieldName, value);
+                    } else {
+                        query.equalTo(fieldName, value);
+                    }
+                };
+            case DATE:
+                return (query, argument) -> {
+                    Date value = toDate(argument);
+                    if (negate) {
+                        query.notEqualTo(fieldName, value);
+                    } else {
+                        query.equalTo(fieldName, value);
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unsupported type");
+        }
+    }
+
+    private static Step compileComparison(String operator, final String fieldName, RealmFieldType type) {
+        final boolean greater = operator.startsWith("greater");
+        final boolean orEqual = operator.endsWith("OrEqualTo");
+        switch (type) {
+            case INTEGER:
+                return (query, argument) -> {
+                    long value = ((Number) argument).longValue();
+                    if (greater && orEqual) {
+                        query.greaterThanOrEqualTo(fieldName, value);
+                    } else if (greater) {
+                        query.greaterThan(fieldName, value);
+                    } else if (orEqual) {
+                        query.lessThanOrEqualTo(fieldName, value);
+                    } else {
+                        query.lessThan(fieldName, value);
+                    }
+                };
+            case DOUBLE:
+                return (query, argument) -> {
+                    double value = ((Number) argument).doubleValue();
+                    if (greater && orEqual) {
+                        query.greaterThanOrEqualTo(fieldName, value);
+                    } else if (greater) {
+                        query.greaterThan(fieldName, value);
+                    } else if (orEqual) {
+                        query.lessThanOrEqualTo(fieldName, value);
+                    } else {
+                        query.lessThan(fieldName, value);
+                    }
+                };
+            case FLOAT:
+                return (query, argument) -> {
+                    float value = ((Number) argument).floatValue();
+                    if (greater && orEqual) {
+                        query.greaterThanOrEqualTo(fieldName, value);
+                    } else if (greater) {
+                        query.greaterThan(fieldName, value);
+                    } else if (orEqual) {
+                        query.lessThanOrEqualTo(fieldName, value);
+                    } else {
+                        query.lessThan(fieldName, value);
+                    }
+                };
+            case DATE:
+                return (query, argument) -> {
+                    Date value = toDate(argument);
+                    if (greater && orEqual) {
+                        query.greaterThanOrEqualTo(fieldName, value);
+                    } else if (greater) {
+                        query.greaterThan(fieldName, value);
+                    } else if (orEqual) {
+                        query.lessThanOrEqualTo(fieldName, value);
+                    } else {
+                        query.lessThan(fieldName, value);
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unsupported type");
+        }
+    }
+
+    private static Step compileBetween(final String fieldName, RealmFieldType type) {
+        switch (type) {
+            case INTEGER:
+                return (query, argument) -> {
+                    List range = (List) argument;
+                    query.between(fieldName, ((Number) range.get(0)).longValue(), ((Number) range.get(1)).longValue());
+                };
+            case DOUBLE:
+                return (query, argument) -> {
+                    List range = (List) argument;
+                    query.between(fieldName, ((Number) range.get(0)).doubleValue(), ((Number) range.get(1)).doubleValue());
+                };
+            case FLOAT:
+                return (query, argument) -> {
+                    List range = (List) argument;
+                    query.between(fieldName, ((Number) range.get(0)).floatValue(), ((Number) range.get(1)).floatValue());
+                };
+            case DATE:
+                return (query, argument) -> {
+                    List range = (List) argument;
+                    query.between(fieldName, toDate(range.get(0)), toDate(range.get(1)));
+                };
+            default:
+                throw new IllegalArgumentException("Unsupported type");
+        }
+    }
+
+    private static void requireType(RealmFieldType type, RealmFieldType expected) {
+        if (type != expected) {
+            throw new IllegalArgumentException("Unsupported type");
+        }
+    }
+
+    private static Date toDate(Object argument) {
+        return new Date(((Number) argument).longValue());
+    }
+}
@@ -0,0 +1,34 @@
+package com.it_nomads.flutter_realm;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Least recently used {@link QueryPlan}s keyed by predicate shape. A plan compiled against an
+ * outdated {@link ClassSchema} is recompiled.
+ */
+class QueryPlanCache {
+    private static final int MAX_PLANS = 64;
+
+    private final Map<String, QueryPlan> plans = new LinkedHashMap<String, QueryPlan>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, QueryPlan> eldest) {
+            return size() > MAX_PLANS;
+        }
+    };
+
+    synchronized QueryPlan get(ClassSchema schema, List<List> predicate) {
+        String shape = QueryPlan.shapeOf(schema.className, predicate);
+        QueryPlan plan = plans.get(shape);
+        if (plan == null || plan.schema != schema) {
+            plan = QueryPlan.compile(schema, predicate);
+            plans.put(shape, plan);
+        }
+        return plan;
+    }
+
+    synchronized void clear() {
+        plans.clear();
+    }
+}
@@ -0,0 +1,217 @@
+package com.it_nomads.flutter_realm;
+
+import java.util.Date;
+
+import io.realm.DynamicRealmObject;
+import io.realm.RealmQuery;
+
+/**
+ * {@link QueryBuilder} adding its conditions to a {@link RealmQuery}.
+ */
+final class RealmQueryBuilder implements QueryBuilder {
+    private final RealmQuery<DynamicRealmObject> query;
+
+    RealmQueryBuilder(RealmQuery<DynamicRealmObject> query) {
+        this.query = query;
+    }
+
+    @Override
+    public void and() {
+        query.and();
+    }
+
+    @Override
+    public void or() {
+        query.or();
+    }
+
+    @Override
+    public void isNull(String fieldName) {
+        query.isNull(fieldName);
+    }
+
+    @Override
+    public void isNotNull(String fieldName) {
+        query.isNotNull(fieldName);
+    }
+
+    @Override
+    public void equalTo(String fieldName, Long value) {
+        query.equalTo(fieldName, value);
+    }
+
+    @Override
+    public void equalTo(String fieldName, Double value) {
+        query.equalTo(fieldName, value);
+    }
+
+    @Override
+    public void equalTo(String fieldName, Float value) {
+        query.equalTo(fieldName, value);
+    }
+
+    @Override
+    public void equalTo(String fieldName, Boolean value) {
+        query.equalTo(fieldName, value);
+    }
+
+    @Override
+    public void equalTo(String fieldName, String value) {
+        query.equalTo(fieldName, value);
+    }
+
+    @Override
+    public void equalTo(String fieldName, Date value) {
+        query.equalTo(fieldName, value);
+    }
+
+    @Override
+    public void notEqualTo(String fieldName, Long value) {
+        query.notEqualTo(fieldName, value);
+    }
+
+    @Override
+    public void notEqualTo(String fieldName, Double value) {
+        query.notEqualTo(fieldName, value);
+    }
+
+    @Override
+    public void notEqualTo(String fieldName, Float value) {
+        query.notEqualTo(fieldName, value);
+    }
+
+    @Override
+    public void notEqualTo(String fieldName, Boolean value) {
+        query.notEqualTo(fieldName, value);
+    }
+
+    @Override
+    public void notEqualTo(String fieldName, String value) {
+        query.notEqualTo(fieldName, value);
+    }
+
+    @Override
+    public void notEqualTo(String fieldName, Date value) {
+        query.notEqualTo(fieldName, value);
+    }
+
+    @Override
+    public void greaterThan(String fieldName, long value) {
+        query.greaterThan(fieldName, value);
+    }
+
+    @Override
+    public void greaterThan(String fieldName, double value) {
+        query.greaterThan(fieldName, value);
+    }
+
+    @Override
+    public void greaterThan(String fieldName, float value) {
+        query.greaterThan(fieldName, value);
+    }
+
+    @Override
+    public void greaterThan(String fieldName, Date value) {
+        query.greaterThan(fieldName, value);
+    }
+
+    @Override
+    public void greaterThanOrEqualTo(String fieldName, long value) {
+        query.greaterThanOrEqualTo(fieldName, value);
+    }
+
+    @Override
+    public void greaterThanOrEqualTo(String fieldName, double value) {
+        query.greaterThanOrEqualTo(fieldName, value);
+    }
+
+    @Override
+    public void greaterThanOrEqualTo(String fieldName, float value) {
+        query.greaterThanOrEqualTo(fieldName, value);
+    }
+
+    @Override
+    public void greaterThanOrEqualTo(String fieldName, Date value) {
+        query.greaterThanOrEqualTo(fieldName, value);
+    }
+
+    @Override
+    public void lessThan(String fieldName, long value) {
+        query.lessThan(fieldName, value);
+    }
+
+    @Override
+    public void lessThan(String fieldName, double value) {
+        query.lessThan(fieldName, value);
+    }
+
+    @Override
+    public void lessThan(String fieldName, float value) {
+        query.lessThan(fieldName, value);
+    }
+
+    @Override
+    public void lessThan(String fieldName, Date value) {
+        query.lessThan(fieldName, value);
+    }
+
+    @Override
+    public void lessThanOrEqualTo(String fieldName, long value) {
+        query.lessThanOrEqualTo(fieldName, value);
+    }
+
+    @Override
+    public void lessThanOrEqualTo(String fieldName, double value) {
+        query.lessThanOrEqualTo(fieldName, value);
+    }
+
+    @Override
+    public void lessThanOrEqualTo(String fieldName, float value) {
+        query.lessThanOrEqualTo(fieldName, value);
+    }
+
+    @Override
+    public void lessThanOrEqualTo(String fieldName, Date value) {
+        query.lessThanOrEqualTo(fieldName, value);
+    }
+
+    @Override
+    public void between(String fieldName, long low, long high) {
+        query.between(fieldName, low, high);
+    }
+
+    @Override
+    public void between(String fieldName, double low, double high) {
+        query.between(fieldName, low, high);
+    }
+
+    @Override
+    public void between(String fieldName, float low, float high) {
+        query.between(fieldName, low, high);
+    }
+
+    @Override
+    public void between(String fieldName, Date low, Date high) {
+        query.between(fieldName, low, high);
+    }
+
+    @Override
+    public void contains(String fieldName, String value) {
+        query.contains(fieldName, value);
+    }
+
+    @Override
+    public void beginsWith(String fieldName, String value) {
+        query.beginsWith(fieldName, value);
+    }
+
+    @Override
+    public void in(String fieldName, String[] values) {
+        query.in(fieldName, values);
+    }
+
+    @Override
+    public void in(String fieldName, Long[] values) {
+        query.in(fieldName, values);
+    }
+}
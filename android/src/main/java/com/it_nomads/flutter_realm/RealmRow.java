@@ -0,0 +1,101 @@
+package com.it_nomads.flutter_realm;
+
+import java.util.Date;
+import java.util.List;
+
+import io.realm.DynamicRealmObject;
+
+/**
+ * {@link Row} over a {@link DynamicRealmObject}. Loops over results reuse one instance through
+ * {@link #wrap(DynamicRealmObject)} rather than allocating one per object.
+ */
+final class RealmRow implements Row {
+    private DynamicRealmObject object;
+
+    RealmRow() {
+    }
+
+    RealmRow(DynamicRealmObject object) {
+        this.object = object;
+    }
+
+    RealmRow wrap(DynamicRealmObject object) {
+        this.object = object;
+        return this;
+    }
+
+    @Override
+    public boolean isNull(String name) {
+        return object.isNull(name);
+    }
+
+    @Override
+    public long getLong(String name) {
+        return object.getLong(name);
+    }
+
+    @Override
+    public int getInt(String name) {
+        return object.getInt(name);
+    }
+
+    @Override
+    public boolean getBoolean(String name) {
+        return object.getBoolean(name);
+    }
+
+    @Override
+    public double getDouble(String name) {
+        return object.getDouble(name);
+    }
+
+    @Override
+    public float getFloat(String name) {
+        return object.getFloat(name);
+    }
+
+    @Override
+    public String getString(String name) {
+        return object.getString(name);
+    }
+
+    @Override
+    public byte[] getBlob(String name) {
+        return object.getBlob(name);
+    }
+
+    @Override
+    public Date getDate(String name) {
+        return object.getDate(name);
+    }
+
+    @Override
+    public <E> List<E> getList(String name, Class<E> elementType) {
+        return object.getList(name, elementType);
+    }
+
+    @Override
+    public Object get(String name) {
+        return object.get(name);
+    }
+
+    @Override
+    public void set(String name, Object value) {
+        object.set(name, value);
+    }
+
+    @Override
+    public void setNull(String name) {
+        object.setNull(name);
+    }
+
+    @Override
+    public void setLong(String name, long value) {
+        object.setLong(name, value);
+    }
+
+    @Override
+    public void setInt(String name, int value) {
+        object.setInt(name, value);
+    }
+}
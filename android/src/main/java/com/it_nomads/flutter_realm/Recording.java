@@ -5,6 +5,8 @@ import io.realm.annotations.Index;
 import io.realm.annotations.PrimaryKey;
 
 public class Recording extends RealmObject {
+    static final String CLASS_NAME = "Recording";
+
     @PrimaryKey
     private String uuid;
     private long createdAt;
@@ -18,6 +20,9 @@ public class Recording extends RealmObject {
     private int thumbnailWidth;
     private int thumbnailHeight;
     private byte[] thumbnailData;
+    // Where thumbnailData lives in the BlobStore when it is enabled; zero otherwise.
+    private long thumbnailOffset;
+    private int thumbnailLength;
     private double frameRate;
     private int fileSize;
     private String digest;
@@ -100,6 +105,22 @@ public class Recording extends RealmObject {
         this.thumbnailData = thumbnailData;
     }
 
+    public long getThumbnailOffset() {
+        return thumbnailOffset;
+    }
+
+    public void setThumbnailOffset(long thumbnailOffset) {
+        this.thumbnailOffset = thumbnailOffset;
+    }
+
+    public int getThumbnailLength() {
+        return thumbnailLength;
+    }
+
+    public void setThumbnailLength(int thumbnailLength) {
+        this.thumbnailLength = thumbnailLength;
+    }
+
     public double getFrameRate() {
         return frameRate;
     }
@@ -0,0 +1,35 @@
+package com.it_nomads.flutter_realm;
+
+import io.flutter.plugin.common.EventChannel;
+import io.realm.DynamicRealm;
+import io.realm.DynamicRealmObject;
+import io.realm.RealmResults;
+
+/**
+ * State of one "openStream" query. The results are evaluated once on a frozen copy of the realm,
+ * so chunks stay consistent with each other while writes continue, and are sent
+ * {@code chunkSize} objects at a time as the Dart side asks for them.
+ */
+class ResultStream {
+    final String id;
+    final EventChannel channel;
+    final DynamicRealm frozenRealm;
+    final RealmResults<DynamicRealmObject> results;
+    final FieldProjection projection;
+    final int chunkSize;
+
+    // Index of the first object of the next chunk.
+    int position;
+    // Set once the Dart side listens; only used from the main thread.
+    EventChannel.EventSink sink;
+
+    ResultStream(String id, EventChannel channel, DynamicRealm frozenRealm, RealmResults<DynamicRealmObject> results,
+                 FieldProjection projection, int chunkSize) {
+        this.id = id;
+        this.channel = channel;
+        this.frozenRealm = frozenRealm;
+        this.results = results;
+        this.projection = projection;
+        this.chunkSize = chunkSize;
+    }
+}
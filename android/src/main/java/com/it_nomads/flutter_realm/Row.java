@@ -0,0 +1,41 @@
+package com.it_nomads.flutter_realm;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The accessors of a realm object that {@link ClassSchema} reads and writes fields through. Objects
+ * of a realm are wrapped in a {@link RealmRow}; the JVM benchmarks in {@code android/benchmark}
+ * use rows of their own, since a live DynamicRealmObject needs the native library.
+ */
+interface Row {
+    boolean isNull(String name);
+
+    long getLong(String name);
+
+    int getInt(String name);
+
+    boolean getBoolean(String name);
+
+    double getDouble(String name);
+
+    float getFloat(String name);
+
+    String getString(String name);
+
+    byte[] getBlob(String name);
+
+    Date getDate(String name);
+
+    <E> List<E> getList(String name, Class<E> elementType);
+
+    Object get(String name);
+
+    void set(String name, Object value);
+
+    void setNull(String name);
+
+    void setLong(String name, long value);
+
+    void setInt(String name, int value);
+}
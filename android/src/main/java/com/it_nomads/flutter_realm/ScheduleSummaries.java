@@ -0,0 +1,136 @@
+package com.it_nomads.flutter_realm;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import io.realm.DynamicRealm;
+import io.realm.DynamicRealmObject;
+import io.realm.RealmResults;
+import io.realm.RealmSchema;
+
+/**
+ * Keeps one {@link ScheduleSummary} per Recording.scheduleId, written in the same transactions as
+ * the recordings, so per-schedule questions are primary-key lookups instead of scans.
+ *
+ * New recordings are added to their summary right away. Deletes and updates can lower the latest
+ * createdAt, so they only mark the schedule, which is recomputed from its recordings (an indexed
+ * query) once per transaction in {@link #flush(DynamicRealm)}, right before the commit.
+ */
+class ScheduleSummaries {
+    static final String CLASS_NAME = "ScheduleSummary";
+
+    private final Set<String> stale = new HashSet<>();
+
+    static void createSchema(RealmSchema schema) {
+        schema.createWithPrimaryKeyField(CLASS_NAME, "scheduleId", String.class)
+                .addField("recordingCount", long.class)
+                .addField("totalFileSize", long.class)
+                .addField("totalDuration", double.class)
+                .addField("latestCreatedAt", long.class);
+    }
+
+    /**
+     * Recomputes every summary from the recordings. Must run inside a transaction.
+     */
+    static void rebuild(DynamicRealm realm) {
+        realm.delete(CLASS_NAME);
+        for (DynamicRealmObject recording : realm.where(Recording.CLASS_NAME).distinct("scheduleId").findAll()) {
+            refresh(realm, recording.getString("scheduleId"));
+        }
+    }
+
+    private static final String[] SUMMARIZED_FIELDS = {"scheduleId", "fileSize", "duration", "createdAt"};
+
+    /**
+     * Whether updating {@code recording} with these values changes a field its summary is built
+     * from. Values equal to the stored ones don't.
+     */
+    static boolean affectedBy(ClassSchema schema, DynamicRealmObject recording, Map value) {
+        for (String fieldName : SUMMARIZED_FIELDS) {
+            if (value.containsKey(fieldName) && schema.field(fieldName).changes(recording, value.get(fieldName))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Field of ScheduleSummary that orders schedules like {@code orderBy} orders their recordings,
+     * or null if there is none.
+     */
+    static String sortField(String orderBy) {
+        switch (orderBy) {
+            case "scheduleId":
+                return "scheduleId";
+            case "createdAt":
+                return "latestCreatedAt";
+            case "fileSize":
+                return "totalFileSize";
+            case "duration":
+                return "totalDuration";
+            default:
+                return null;
+        }
+    }
+
+    static long count(DynamicRealm realm, String scheduleId) {
+        DynamicRealmObject summary = find(realm, scheduleId);
+        return summary == null ? 0 : summary.getLong("recordingCount");
+    }
+
+    void added(DynamicRealm realm, DynamicRealmObject recording) {
+        String scheduleId = recording.getString("scheduleId");
+        if (stale.contains(scheduleId)) {
+            return;
+        }
+        DynamicRealmObject summary = find(realm, scheduleId);
+        if (summary == null) {
+            summary = realm.createObject(CLASS_NAME, scheduleId);
+        }
+        long createdAt = recording.getLong("createdAt");
+        summary.setLong("recordingCount", summary.getLong("recordingCount") + 1);
+        summary.setLong("totalFileSize", summary.getLong("totalFileSize") + recording.getInt("fileSize"));
+        summary.setDouble("totalDuration", summary.getDouble("totalDuration") + recording.getDouble("duration"));
+        if (summary.getLong("recordingCount") == 1 || createdAt > summary.getLong("latestCreatedAt")) {
+            summary.setLong("latestCreatedAt", createdAt);
+        }
+    }
+
+    void changed(String scheduleId) {
+        stale.add(scheduleId);
+    }
+
+    void flush(DynamicRealm realm) {
+        for (String scheduleId : stale) {
+            refresh(realm, scheduleId);
+        }
+        stale.clear();
+    }
+
+    void discard() {
+        stale.clear();
+    }
+
+    private static void refresh(DynamicRealm realm, String scheduleId) {
+        RealmResults<DynamicRealmObject> recordings = realm.where(Recording.CLASS_NAME).equalTo("scheduleId", scheduleId).findAll();
+        DynamicRealmObject summary = find(realm, scheduleId);
+        if (recordings.isEmpty()) {
+            if (summary != null) {
+                summary.deleteFromRealm();
+            }
+            return;
+        }
+        if (summary == null) {
+            summary = realm.createObject(CLASS_NAME, scheduleId);
+        }
+        summary.setLong("recordingCount", recordings.size());
+        summary.setLong("totalFileSize", recordings.sum("fileSize").longValue());
+        summary.setDouble("totalDuration", recordings.sum("duration").doubleValue());
+        summary.setLong("latestCreatedAt", recordings.max("createdAt").longValue());
+    }
+
+    private static DynamicRealmObject find(DynamicRealm realm, String scheduleId) {
+        return realm.where(CLASS_NAME).equalTo("scheduleId", scheduleId).findFirst();
+    }
+}
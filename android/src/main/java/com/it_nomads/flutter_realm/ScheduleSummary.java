@@ -0,0 +1,56 @@
+package com.it_nomads.flutter_realm;
+
+import io.realm.RealmObject;
+import io.realm.annotations.PrimaryKey;
+
+/**
+ * Aggregates of the recordings of one schedule, maintained by {@link ScheduleSummaries}.
+ */
+public class ScheduleSummary extends RealmObject {
+    @PrimaryKey
+    private String scheduleId;
+    private long recordingCount;
+    private long totalFileSize;
+    private double totalDuration;
+    private long latestCreatedAt;
+
+    public String getScheduleId() {
+        return scheduleId;
+    }
+
+    public void setScheduleId(String scheduleId) {
+        this.scheduleId = scheduleId;
+    }
+
+    public long getRecordingCount() {
+        return recordingCount;
+    }
+
+    public void setRecordingCount(long recordingCount) {
+        this.recordingCount = recordingCount;
+    }
+
+    public long getTotalFileSize() {
+        return totalFileSize;
+    }
+
+    public void setTotalFileSize(long totalFileSize) {
+        this.totalFileSize = totalFileSize;
+    }
+
+    public double getTotalDuration() {
+        return totalDuration;
+    }
+
+    public void setTotalDuration(double totalDuration) {
+        this.totalDuration = totalDuration;
+    }
+
+    public long getLatestCreatedAt() {
+        return latestCreatedAt;
+    }
+
+    public void setLatestCreatedAt(long latestCreatedAt) {
+        this.latestCreatedAt = latestCreatedAt;
+    }
+}
@@ -0,0 +1,45 @@
+package com.it_nomads.flutter_realm;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.realm.DynamicRealm;
+import io.realm.RealmObjectSchema;
+
+/**
+ * Per-realm cache of {@link ClassSchema}s. Entries are dropped whenever the realm's schema version
+ * changes, and on {@link #invalidate()}. Shared by the realm thread and the snapshot read pool.
+ */
+class SchemaCache {
+    private final Map<String, ClassSchema> classes = new HashMap<>();
+    private long schemaVersion = -1;
+    private BlobStore blobStore;
+
+    synchronized ClassSchema get(DynamicRealm realm, String className) throws IllegalArgumentException {
+        long version = realm.getVersion();
+        if (version != schemaVersion) {
+            classes.clear();
+            schemaVersion = version;
+        }
+        ClassSchema schema = classes.get(className);
+        if (schema == null) {
+            RealmObjectSchema objectSchema = realm.getSchema().get(className);
+            if (objectSchema == null) {
+                throw new IllegalArgumentException("Unknown class: " + className);
+            }
+            schema = new ClassSchema(objectSchema, blobStore);
+            classes.put(className, schema);
+        }
+        return schema;
+    }
+
+    synchronized void setBlobStore(BlobStore blobStore) {
+        this.blobStore = blobStore;
+        invalidate();
+    }
+
+    synchronized void invalidate() {
+        classes.clear();
+        schemaVersion = -1;
+    }
+}
@@ -0,0 +1,195 @@
+package com.it_nomads.flutter_realm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import io.realm.DynamicRealm;
+import io.realm.DynamicRealmObject;
+import io.realm.FieldAttribute;
+import io.realm.RealmQuery;
+import io.realm.RealmSchema;
+
+/**
+ * Token prefix index over Recording.title, stored as {@link SearchToken} rows.
+ *
+ * Titles are split into lowercase letter/digit tokens and every prefix of a token from
+ * {@link #MIN_PREFIX} up to {@link #MAX_PREFIX} characters gets a row, so a search term is an
+ * indexed equality lookup rather than a scan. Shorter terms only match whole tokens, since a single
+ * letter starts a word of nearly every title. Longer terms look up their first {@link #MAX_PREFIX}
+ * characters and are verified against the title. Rows are written in the same transaction as the
+ * recording they describe.
+ */
+class SearchIndex {
+    static final String FIELD = "title";
+    static final String TOKEN_CLASS_NAME = "SearchToken";
+    static final int MIN_PREFIX = 2;
+    static final int MAX_PREFIX = 10;
+
+    static void createSchema(RealmSchema schema) {
+        schema.create(TOKEN_CLASS_NAME)
+                .addField("prefix", String.class, FieldAttribute.INDEXED)
+                .addField("recordingId", String.class, FieldAttribute.INDEXED)
+                .addField("position", int.class)
+                .addField("exact", boolean.class);
+    }
+
+    /**
+     * Replaces the rows of {@code recordingId} with those of {@code title}. Must run inside a
+     * transaction.
+     */
+    static void index(DynamicRealm realm, String recordingId, String title) {
+        remove(realm, recordingId);
+        for (Map.Entry<String, int[]> entry : prefixes(title).entrySet()) {
+            DynamicRealmObject row = realm.createObject(TOKEN_CLASS_NAME);
+            row.setString("prefix", entry.getKey());
+            row.setString("recordingId", recordingId);
+            row.setInt("position", entry.getValue()[0]);
+            row.setBoolean("exact", entry.getValue()[1] == 1);
+        }
+    }
+
+    /**
+     * Rows of {@code title} keyed by prefix, as {position, exact}: the earliest token that is
+     * exactly the prefix, with exact 1, or else the earliest token the prefix starts, with exact 0.
+     * Prefixes shorter than {@link #MIN_PREFIX} only get a row when they are a whole token.
+     */
+    static Map<String, int[]> prefixes(String title) {
+        List<String> tokens = tokenize(title);
+        Map<String, int[]> prefixes = new LinkedHashMap<>();
+        for (int position = 0; position < tokens.size(); position++) {
+            String token = tokens.get(position);
+            for (int length = 1; length <= Math.min(token.length(), MAX_PREFIX); length++) {
+                boolean exact = length == token.length();
+                if (length < MIN_PREFIX && !exact) {
+                    continue;
+                }
+                String prefix = token.substring(0, length);
+                int[] row = prefixes.get(prefix);
+                if (row == null) {
+                    prefixes.put(prefix, new int[]{position, exact ? 1 : 0});
+                } else if (exact && row[1] == 0) {
+                    // A whole-token match ranks above any prefix match, so it decides the position.
+                    row[0] = position;
+                    row[1] = 1;
+                }
+            }
+        }
+        return prefixes;
+    }
+
+    static void remove(DynamicRealm realm, String recordingId) {
+        realm.where(TOKEN_CLASS_NAME).equalTo("recordingId", recordingId).findAll().deleteAllFromRealm();
+    }
+
+    /**
+     * Primary keys of the recordings whose titles contain a token starting with every term of
+     * {@code query}, best first: whole-token matches and matches early in the title rank higher.
+     */
+    static List<String> search(DynamicRealm realm, String query, int limit) {
+        Map<String, Integer> scores = null;
+        for (String term : tokenize(query)) {
+            boolean truncated = term.length() > MAX_PREFIX;
+            Map<String, Integer> termScores = new HashMap<>();
+            RealmQuery<DynamicRealmObject> rows = realm.where(TOKEN_CLASS_NAME)
+                    .equalTo("prefix", truncated ? term.substring(0, MAX_PREFIX) : term);
+            if (term.length() < MIN_PREFIX) {
+                rows = rows.equalTo("exact", true);
+            }
+            for (DynamicRealmObject row : rows.findAll()) {
+                String recordingId = row.getString("recordingId");
+                if (scores != null && !scores.containsKey(recordingId)) {
+                    continue;
+                }
+                int score = score(row.getBoolean("exact") && !truncated, row.getInt("position"));
+                if (truncated) {
+                    score = verify(realm, recordingId, term);
+                    if (score < 0) {
+                        continue;
+                    }
+                }
+                termScores.put(recordingId, scores == null ? score : scores.get(recordingId) + score);
+            }
+            scores = termScores;
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        if (scores == null) {
+            return Collections.emptyList();
+        }
+        return rank(scores, limit);
+    }
+
+    /**
+     * Score of one term matching a token at {@code position}: whole-token matches beat prefix
+     * matches, and earlier tokens beat later ones.
+     */
+    static int score(boolean exact, int position) {
+        return (exact ? 20 : 10) - Math.min(position, 9);
+    }
+
+    /**
+     * Up to {@code limit} (all if negative) keys of {@code scores}, highest score first and by key
+     * among equal scores.
+     */
+    static List<String> rank(Map<String, Integer> scores, int limit) {
+        List<Map.Entry<String, Integer>> ranked = new ArrayList<>(scores.entrySet());
+        Collections.sort(ranked, (a, b) -> {
+            int byScore = b.getValue().compareTo(a.getValue());
+            return byScore != 0 ? byScore : a.getKey().compareTo(b.getKey());
+        });
+        int size = limit >= 0 ? Math.min(limit, ranked.size()) : ranked.size();
+        List<String> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add(ranked.get(i).getKey());
+        }
+        return ids;
+    }
+
+    /**
+     * Best score of {@code term} against the title of {@code recordingId}, or -1 if no token starts
+     * with it.
+     */
+    private static int verify(DynamicRealm realm, String recordingId, String term) {
+        DynamicRealmObject recording = realm.where(Recording.CLASS_NAME).equalTo("uuid", recordingId).findFirst();
+        if (recording == null) {
+            return -1;
+        }
+        List<String> tokens = tokenize(recording.getString(FIELD));
+        int best = -1;
+        for (int position = 0; position < tokens.size(); position++) {
+            String token = tokens.get(position);
+            if (token.startsWith(term)) {
+                best = Math.max(best, score(token.length() == term.length(), position));
+            }
+        }
+        return best;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean letterOrDigit = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (letterOrDigit && start < 0) {
+                start = i;
+            } else if (!letterOrDigit && start >= 0) {
+                String token = lower.substring(start, i);
+                if (!tokens.contains(token)) {
+                    tokens.add(token);
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
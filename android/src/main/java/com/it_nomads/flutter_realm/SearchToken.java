@@ -0,0 +1,49 @@
+package com.it_nomads.flutter_realm;
+
+import io.realm.RealmObject;
+import io.realm.annotations.Index;
+
+/**
+ * One row of the title search index maintained by {@link SearchIndex}: a token prefix found in the
+ * title of the recording {@code recordingId}.
+ */
+public class SearchToken extends RealmObject {
+    @Index
+    private String prefix;
+    @Index
+    private String recordingId;
+    private int position;
+    private boolean exact;
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public String getRecordingId() {
+        return recordingId;
+    }
+
+    public void setRecordingId(String recordingId) {
+        this.recordingId = recordingId;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public void setPosition(int position) {
+        this.position = position;
+    }
+
+    public boolean isExact() {
+        return exact;
+    }
+
+    public void setExact(boolean exact) {
+        this.exact = exact;
+    }
+}
@@ -0,0 +1,55 @@
+package com.it_nomads.flutter_realm;
+
+import android.os.Handler;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import io.realm.DynamicRealmObject;
+import io.realm.RealmResults;
+
+/**
+ * State of one subscribeObjects/subscribeAllObjects query, shared by every subscriber that asked for
+ * the same signature (class, predicate, sort, limit and notification options).
+ */
+class Subscription {
+    final String signature;
+    final Set<String> subscriberIds = new LinkedHashSet<>();
+    final String className;
+    final RealmResults<DynamicRealmObject> results;
+    final boolean deltas;
+    final FieldProjection projection;
+    // Minimum time between two notifications; changes in between are merged. 0 notifies on every change.
+    final long throttleMillis;
+
+    // Whether subscribers already received results; later subscribers then get a snapshot on joining.
+    boolean notified;
+
+    // Coalescing state, only used when throttleMillis > 0.
+    final Handler handler;
+    Runnable pendingFlush;
+    long lastNotifiedAt;
+    // Primary keys of the results the Dart side last received, to diff a merged change set against.
+    Object[] sentKeys;
+    final Set<Object> modifiedKeys = new HashSet<>();
+
+    Subscription(String signature, String className, RealmResults<DynamicRealmObject> results, boolean deltas, FieldProjection projection,
+                 long throttleMillis, Handler handler) {
+        this.signature = signature;
+        this.className = className;
+        this.results = results;
+        this.deltas = deltas;
+        this.projection = projection;
+        this.throttleMillis = throttleMillis;
+        this.handler = handler;
+    }
+
+    void cancel() {
+        results.removeAllChangeListeners();
+        if (pendingFlush != null) {
+            handler.removeCallbacks(pendingFlush);
+            pendingFlush = null;
+        }
+    }
+}
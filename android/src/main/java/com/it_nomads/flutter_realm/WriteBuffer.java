@@ -0,0 +1,55 @@
+package com.it_nomads.flutter_realm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * updateObject values waiting for the next write-behind flush. Updates are merged per class and
+ * primary key, so an object updated many times within one interval is written once, with the last
+ * value of every field.
+ */
+class WriteBuffer {
+    static class Entry {
+        final String className;
+        final Object primaryKey;
+        final Map<Object, Object> value = new HashMap<>();
+
+        Entry(String className, Object primaryKey) {
+            this.className = className;
+            this.primaryKey = primaryKey;
+        }
+    }
+
+    private final Map<List<Object>, Entry> entries = new LinkedHashMap<>();
+
+    void add(String className, Object primaryKey, Map value) {
+        // The channel sends small integers as Integer, but they name the same object as a Long.
+        if (primaryKey instanceof Integer) {
+            primaryKey = ((Integer) primaryKey).longValue();
+        }
+        List<Object> key = Arrays.asList(className, primaryKey);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(className, primaryKey);
+            entries.put(key, entry);
+        }
+        entry.value.putAll(value);
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Removes and returns all pending entries, in the order their objects were first updated.
+     */
+    List<Entry> drain() {
+        List<Entry> drained = new ArrayList<>(entries.values());
+        entries.clear();
+        return drained;
+    }
+}
@@ -0,0 +1,110 @@
+package com.it_nomads.flutter_realm;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BlobStoreTest {
+    private File path;
+    private BlobStore store;
+
+    @Before
+    public void open() throws IOException {
+        path = File.createTempFile("realm", ".blobs");
+        path.delete();
+        store = new BlobStore(path);
+    }
+
+    @After
+    public void delete() throws IOException {
+        store.close();
+        path.delete();
+        new File(path.getPath() + ".compacting").delete();
+    }
+
+    @Test
+    public void readsAppendedBlobs() throws IOException {
+        long first = store.append(new byte[]{1, 2, 3});
+        long second = store.append(new byte[]{4, 5});
+        store.sync();
+
+        assertArrayEquals(new byte[]{1, 2, 3}, store.read(first, 3));
+        assertArrayEquals(new byte[]{4, 5}, bytes(store.slice(second, 2)));
+        assertEquals(5, store.size());
+    }
+
+    @Test
+    public void compactionKeepsOffsetsGrowingAndDropsDeadBlobs() throws IOException {
+        long dead = store.append(new byte[100]);
+        long live = store.append(new byte[]{7, 8, 9});
+
+        long[] moved = store.writeCompacted(new long[]{live}, new int[]{3});
+        store.installCompacted();
+
+        assertTrue(moved[0] > live);
+        assertEquals(3, store.size());
+        assertArrayEquals(new byte[]{7, 8, 9}, store.read(moved[0], 3));
+        try {
+            store.slice(dead, 100);
+            fail("Read from a closed generation");
+        } catch (IOException expected) {
+            // No read was in flight, so the old generation is gone.
+        }
+    }
+
+    @Test
+    public void readsInFlightKeepReplacedGenerations() throws IOException {
+        long offset = store.append(new byte[]{1, 2, 3});
+        assertTrue(store.beginRead());
+
+        long[] moved = store.writeCompacted(new long[]{offset}, new int[]{3});
+        store.installCompacted();
+        store.clear();
+        assertArrayEquals(new byte[]{1, 2, 3}, bytes(store.slice(offset, 3)));
+        assertArrayEquals(new byte[]{1, 2, 3}, bytes(store.slice(moved[0], 3)));
+
+        store.endRead();
+        try {
+            store.slice(offset, 3);
+            fail("Read from a closed generation");
+        } catch (IOException expected) {
+            // Closed by the last read ending.
+        }
+    }
+
+    @Test
+    public void closeWaitsForReadsInFlight() throws IOException {
+        long offset = store.append(new byte[]{1, 2, 3});
+        assertTrue(store.beginRead());
+
+        store.close();
+        assertFalse(store.beginRead());
+        assertArrayEquals(new byte[]{1, 2, 3}, bytes(store.slice(offset, 3)));
+        store.endRead();
+    }
+
+    @Test
+    public void compactsOnceHalfOfABigEnoughStoreIsDead() {
+        long min = BlobStore.RECLAIM_MIN_BYTES;
+        assertTrue(BlobStore.worthCompacting(2 * min, min));
+        assertFalse(BlobStore.worthCompacting(3 * min, 2 * min));
+        assertFalse(BlobStore.worthCompacting(min - 1, 0));
+        assertFalse(BlobStore.worthCompacting(0, 0));
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
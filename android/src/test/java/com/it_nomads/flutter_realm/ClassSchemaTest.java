@@ -0,0 +1,39 @@
+package com.it_nomads.flutter_realm;
+
+import org.junit.Test;
+
+import io.realm.RealmFieldType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ClassSchemaTest {
+    private static final ClassSchema.Field INTEGER_KEY = new ClassSchema.Field("id", RealmFieldType.INTEGER, false, null);
+    private static final ClassSchema.Field STRING_KEY = new ClassSchema.Field("uuid", RealmFieldType.STRING, false, null);
+
+    @Test
+    public void widensIntegerKeysToLong() {
+        assertEquals(7L, INTEGER_KEY.asKey(7));
+        assertEquals(7L, INTEGER_KEY.asKey(7L));
+    }
+
+    @Test
+    public void keepsStringKeys() {
+        assertEquals("recording-1", STRING_KEY.asKey("recording-1"));
+    }
+
+    @Test
+    public void rejectsKeysOfTheWrongType() {
+        assertNull(INTEGER_KEY.asKey("7"));
+        assertNull(INTEGER_KEY.asKey(7.5));
+        assertNull(STRING_KEY.asKey(7));
+        assertNull(STRING_KEY.asKey(7L));
+        assertNull(STRING_KEY.asKey(null));
+    }
+
+    @Test
+    public void rejectsKeysOfFieldsThatCantBePrimaryKeys() {
+        ClassSchema.Field duration = new ClassSchema.Field("duration", RealmFieldType.DOUBLE, false, null);
+        assertNull(duration.asKey(1.0));
+    }
+}
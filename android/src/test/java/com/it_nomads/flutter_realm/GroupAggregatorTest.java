@@ -0,0 +1,68 @@
+package com.it_nomads.flutter_realm;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import io.realm.RealmFieldType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class GroupAggregatorTest {
+    private static final ClassSchema.Field FILE_SIZE = new ClassSchema.Field("fileSize", RealmFieldType.INTEGER, true, null);
+    private static final ClassSchema.Field DURATION = new ClassSchema.Field("duration", RealmFieldType.DOUBLE, false, null);
+    private static final ClassSchema.Field CREATED_AT = new ClassSchema.Field("createdAt", RealmFieldType.DATE, true, null);
+    private static final ClassSchema.Field TITLE = new ClassSchema.Field("title", RealmFieldType.STRING, true, null);
+
+    @Test
+    public void aggregatesEachGroupInOrderOfFirstRow() throws Exception {
+        GroupAggregator aggregator = new GroupAggregator(
+                new String[]{"count", "sum", "avg", "sum", "min", "max"},
+                new ClassSchema.Field[]{null, FILE_SIZE, FILE_SIZE, DURATION, CREATED_AT, DURATION});
+        aggregator.add("b", new Object[]{null, 10L, 10L, 1.5, new Date(2000), 1.5});
+        aggregator.add("a", new Object[]{null, 5L, 5L, 2.0, null, 2.0});
+        aggregator.add("b", new Object[]{null, null, null, 0.5, new Date(1000), 0.5});
+        aggregator.add("b", new Object[]{null, 20L, 20L, 3.0, new Date(3000), 3.0});
+
+        List<Map> rows = aggregator.rows();
+        assertEquals(2, rows.size());
+        assertEquals("b", rows.get(0).get("group"));
+        assertEquals(Arrays.<Object>asList(3, 30L, 15.0, 5.0, 1000L, 3.0), rows.get(0).get("values"));
+        assertEquals("a", rows.get(1).get("group"));
+        assertEquals(Arrays.<Object>asList(1, 5L, 5.0, 2.0, null, 2.0), rows.get(1).get("values"));
+    }
+
+    @Test
+    public void reportsDateGroupsAndNullGroups() throws Exception {
+        GroupAggregator aggregator = new GroupAggregator(new String[]{"count", "avg"}, new ClassSchema.Field[]{null, FILE_SIZE});
+        aggregator.add(new Date(5000), new Object[]{null, null});
+        aggregator.add(null, new Object[]{null, 4L});
+        aggregator.add(new Date(5000), new Object[]{null, null});
+
+        List<Map> rows = aggregator.rows();
+        assertEquals(5000L, rows.get(0).get("group"));
+        assertEquals(Arrays.<Object>asList(2, 0.0), rows.get(0).get("values"));
+        assertEquals(null, rows.get(1).get("group"));
+        assertEquals(Arrays.<Object>asList(1, 4.0), rows.get(1).get("values"));
+    }
+
+    @Test
+    public void rejectsAggregatesTheFieldCantTake() {
+        assertRejected("sum", TITLE);
+        assertRejected("avg", CREATED_AT);
+        assertRejected("median", DURATION);
+    }
+
+    private static void assertRejected(String function, ClassSchema.Field field) {
+        try {
+            new GroupAggregator(new String[]{function}, new ClassSchema.Field[]{field});
+            fail(function + " of " + field.name + " was accepted");
+        } catch (Exception expected) {
+            // Reported to Dart as the error of the call.
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.it_nomads.flutter_realm;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KeyedDiffTest {
+    @Test
+    public void unchangedKeysGiveEmptyDiff() {
+        KeyedDiff diff = diff(keys("a", "b", "c"), keys("a", "b", "c"));
+        assertArrayEquals(new int[0], diff.deletions);
+        assertArrayEquals(new int[0], diff.insertions);
+        assertArrayEquals(new int[0], diff.modifications);
+    }
+
+    @Test
+    public void insertionsAndDeletionsUseOldAndNewIndexes() {
+        KeyedDiff diff = diff(keys("a", "b", "c"), keys("a", "x", "c", "y"));
+        assertArrayEquals(new int[]{1}, diff.deletions);
+        assertArrayEquals(new int[]{1, 3}, diff.insertions);
+        assertApplies(keys("a", "b", "c"), keys("a", "x", "c", "y"), diff);
+    }
+
+    @Test
+    public void singleMoveIsOneDeletionAndOneInsertion() {
+        Object[] oldKeys = keys("a", "b", "c", "d", "e");
+        Object[] newKeys = keys("b", "c", "d", "e", "a");
+        KeyedDiff diff = diff(oldKeys, newKeys);
+        assertArrayEquals(new int[]{0}, diff.deletions);
+        assertArrayEquals(new int[]{4}, diff.insertions);
+        assertApplies(oldKeys, newKeys, diff);
+    }
+
+    @Test
+    public void modificationsAreReportedAtNewIndexes() {
+        Object[] oldKeys = keys("a", "b", "c");
+        Object[] newKeys = keys("x", "a", "b", "c");
+        KeyedDiff diff = diff(oldKeys, newKeys, "c");
+        assertArrayEquals(new int[]{3}, diff.modifications);
+        assertApplies(oldKeys, newKeys, diff);
+    }
+
+    @Test
+    public void movedObjectIsInsertedRatherThanModified() {
+        Object[] oldKeys = keys("a", "b", "c");
+        Object[] newKeys = keys("c", "a", "b");
+        KeyedDiff diff = diff(oldKeys, newKeys, "c");
+        assertArrayEquals(new int[]{2}, diff.deletions);
+        assertArrayEquals(new int[]{0}, diff.insertions);
+        assertArrayEquals(new int[0], diff.modifications);
+        assertApplies(oldKeys, newKeys, diff);
+    }
+
+    @Test
+    public void reversalKeepsOneObject() {
+        Object[] oldKeys = keys("a", "b", "c", "d");
+        Object[] newKeys = keys("d", "c", "b", "a");
+        KeyedDiff diff = diff(oldKeys, newKeys);
+        assertEquals(3, diff.deletions.length);
+        assertEquals(3, diff.insertions.length);
+        assertApplies(oldKeys, newKeys, diff);
+    }
+
+    @Test
+    public void fromAndToEmptyResults() {
+        assertApplies(keys(), keys("a", "b"), diff(keys(), keys("a", "b")));
+        assertApplies(keys("a", "b"), keys(), diff(keys("a", "b"), keys()));
+        assertApplies(keys(), keys(), diff(keys(), keys()));
+    }
+
+    @Test
+    public void randomChangesReproduceNewOrder() {
+        Random random = new Random(42);
+        for (int round = 0; round < 500; round++) {
+            List<Object> oldKeys = new ArrayList<>();
+            int size = random.nextInt(30);
+            for (int i = 0; i < size; i++) {
+                oldKeys.add(i);
+            }
+            List<Object> newKeys = new ArrayList<>(oldKeys);
+            newKeys.removeIf(key -> random.nextInt(4) == 0);
+            int inserted = random.nextInt(5);
+            for (int i = 0; i < inserted; i++) {
+                newKeys.add(random.nextInt(newKeys.size() + 1), 100 + i);
+            }
+            if (random.nextBoolean() && newKeys.size() > 1) {
+                Collections.swap(newKeys, random.nextInt(newKeys.size()), random.nextInt(newKeys.size()));
+            }
+            Set<Object> modified = new HashSet<>();
+            for (Object key : newKeys) {
+                if (random.nextInt(5) == 0) {
+                    modified.add(key);
+                }
+            }
+
+            KeyedDiff diff = KeyedDiff.compute(oldKeys.toArray(), newKeys.toArray(), modified);
+            assertApplies(oldKeys.toArray(), newKeys.toArray(), diff);
+            for (int index : diff.modifications) {
+                assertTrue(modified.contains(newKeys.get(index)));
+            }
+        }
+    }
+
+    private static Object[] keys(Object... keys) {
+        return keys;
+    }
+
+    private static KeyedDiff diff(Object[] oldKeys, Object[] newKeys, Object... modifiedKeys) {
+        return KeyedDiff.compute(oldKeys, newKeys, new HashSet<>(Arrays.asList(modifiedKeys)));
+    }
+
+    /**
+     * Applies {@code diff} the way the Dart side does in {@code _applyDelta} and checks that the
+     * result has the new order.
+     */
+    private static void assertApplies(Object[] oldKeys, Object[] newKeys, KeyedDiff diff) {
+        List<Object> results = new ArrayList<>(Arrays.asList(oldKeys));
+        for (int i = diff.deletions.length - 1; i >= 0; i--) {
+            results.remove(diff.deletions[i]);
+        }
+        for (int index : diff.insertions) {
+            results.add(index, newKeys[index]);
+        }
+        for (int index : diff.modifications) {
+            results.set(index, newKeys[index]);
+        }
+        assertEquals(Arrays.asList(newKeys), results);
+    }
+}
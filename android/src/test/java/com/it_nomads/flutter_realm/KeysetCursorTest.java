@@ -0,0 +1,160 @@
+package com.it_nomads.flutter_realm;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.realm.RealmFieldType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KeysetCursorTest {
+    private static final ClassSchema.Field CREATED_AT = new ClassSchema.Field("createdAt", RealmFieldType.DATE, true, null);
+    private static final ClassSchema.Field ID = new ClassSchema.Field("id", RealmFieldType.INTEGER, false, null);
+
+    @Test
+    public void pagesThroughNullableDateDescending() {
+        assertPagesMatchSort(false);
+    }
+
+    @Test
+    public void pagesThroughNullableDateAscending() {
+        assertPagesMatchSort(true);
+    }
+
+    @Test
+    public void nullsFollowEveryValueInDescendingOrder() {
+        KeysetCursor keyset = cursor(false);
+        List<List<KeysetCursor.Clause>> groups = keyset.conditionsAfter(cursorValues(1000L, 3L));
+
+        assertEquals(KeysetCursor.Clause.Op.LESS_THAN_OR_NULL, groups.get(0).get(0).op);
+        assertEquals(KeysetCursor.Clause.Op.GREATER_THAN, groups.get(1).get(1).op);
+    }
+
+    @Test
+    public void nothingFollowsTheLastNullInDescendingOrder() {
+        KeysetCursor keyset = new KeysetCursor(new ClassSchema.Field[]{CREATED_AT}, new boolean[]{false}, null);
+        assertTrue(keyset.conditionsAfter(cursorValues((Object) null)).isEmpty());
+    }
+
+    private static void assertPagesMatchSort(boolean ascending) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        long[] createdAt = {3000, 0, 1000, 0, 3000, 2000, 0, 1000, 0};
+        for (int i = 0; i < createdAt.length; i++) {
+            // Zero stands for a recording that has no date yet.
+            rows.add(row(createdAt[i] == 0 ? null : new Date(createdAt[i]), i));
+        }
+        List<Map<String, Object>> sorted = new ArrayList<>(rows);
+        Collections.sort(sorted, order(ascending));
+
+        for (int pageSize = 1; pageSize <= 4; pageSize++) {
+            KeysetCursor keyset = cursor(ascending);
+            List<Object> paged = new ArrayList<>();
+            Map cursor = null;
+            while (true) {
+                List<Map<String, Object>> page = new ArrayList<>();
+                for (Map<String, Object> row : sorted) {
+                    if (page.size() < pageSize && (cursor == null || matches(keyset.conditionsAfter(cursor), row))) {
+                        page.add(row);
+                    }
+                }
+                for (Map<String, Object> row : page) {
+                    paged.add(row.get("id"));
+                }
+                if (page.size() < pageSize) {
+                    break;
+                }
+                Map<String, Object> last = page.get(page.size() - 1);
+                Date date = (Date) last.get("createdAt");
+                cursor = cursorValues(date == null ? null : date.getTime(), last.get("id"));
+            }
+            assertEquals("page size " + pageSize, ids(sorted), paged);
+        }
+    }
+
+    private static KeysetCursor cursor(boolean ascending) {
+        return new KeysetCursor(new ClassSchema.Field[]{CREATED_AT, ID}, new boolean[]{ascending, true}, null);
+    }
+
+    private static Map<String, Object> cursorValues(Object... values) {
+        Map<String, Object> cursor = new HashMap<>();
+        cursor.put("values", Arrays.asList(values));
+        return cursor;
+    }
+
+    private static Map<String, Object> row(Date createdAt, long id) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("createdAt", createdAt);
+        row.put("id", id);
+        return row;
+    }
+
+    private static List<Object> ids(List<Map<String, Object>> rows) {
+        List<Object> ids = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            ids.add(row.get("id"));
+        }
+        return ids;
+    }
+
+    /**
+     * Sorts like Realm: nulls first in ascending order and last in descending order, then by id.
+     */
+    private static Comparator<Map<String, Object>> order(boolean ascending) {
+        return (a, b) -> {
+            Long x = millis(a.get("createdAt"));
+            Long y = millis(b.get("createdAt"));
+            int byDate = x == null ? (y == null ? 0 : -1) : y == null ? 1 : x.compareTo(y);
+            if (byDate != 0) {
+                return ascending ? byDate : -byDate;
+            }
+            return ((Long) a.get("id")).compareTo((Long) b.get("id"));
+        };
+    }
+
+    private static boolean matches(List<List<KeysetCursor.Clause>> groups, Map<String, Object> row) {
+        for (List<KeysetCursor.Clause> group : groups) {
+            boolean all = true;
+            for (KeysetCursor.Clause clause : group) {
+                all &= matches(clause, row);
+            }
+            if (all) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(KeysetCursor.Clause clause, Map<String, Object> row) {
+        Long value = millis(row.get(clause.field.name));
+        int compared = value == null || !(clause.value instanceof Number) ? 0 : value.compareTo(((Number) clause.value).longValue());
+        switch (clause.op) {
+            case IS_NULL:
+                return value == null;
+            case IS_NOT_NULL:
+                return value != null;
+            case EQUAL_TO:
+                return value != null && compared == 0;
+            case GREATER_THAN:
+                return value != null && compared > 0;
+            case LESS_THAN:
+                return value != null && compared < 0;
+            case LESS_THAN_OR_NULL:
+                return value == null || compared < 0;
+            default:
+                throw new AssertionError("Unexpected " + clause.op);
+        }
+    }
+
+    private static Long millis(Object value) {
+        return value instanceof Date ? (Long) ((Date) value).getTime() : (Long) value;
+    }
+}
@@ -0,0 +1,76 @@
+package com.it_nomads.flutter_realm;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class NdjsonReaderTest {
+    @Test
+    public void skipsBlankLinesOfSpacesAndCarriageReturns() throws Exception {
+        File file = write("{\"uuid\": \"a\"}\r\n\r\n   \n\t\r\n{\"uuid\": \"b\"}\r\n  \r\n");
+        NdjsonReader reader = new NdjsonReader(file, 0);
+        try {
+            assertEquals("a", reader.next().get("uuid"));
+            assertEquals("b", reader.next().get("uuid"));
+            assertNull(reader.next());
+            assertEquals(file.length(), reader.position());
+        } finally {
+            reader.close();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void readsALastLineWithoutNewline() throws Exception {
+        File file = write("{\"uuid\": \"a\"}\n{\"uuid\": \"b\"}");
+        NdjsonReader reader = new NdjsonReader(file, 0);
+        try {
+            reader.next();
+            assertEquals("b", reader.next().get("uuid"));
+            assertNull(reader.next());
+        } finally {
+            reader.close();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void resumesAfterTheLastRecordReturned() throws Exception {
+        File file = write("{\"uuid\": \"a\"}\n\n{\"uuid\": \"b\"}\n");
+        long position;
+        NdjsonReader reader = new NdjsonReader(file, 0);
+        try {
+            reader.next();
+            position = reader.position();
+        } finally {
+            reader.close();
+        }
+
+        reader = new NdjsonReader(file, position);
+        try {
+            Map<String, Object> record = reader.next();
+            assertEquals("b", record.get("uuid"));
+            assertNull(reader.next());
+        } finally {
+            reader.close();
+            file.delete();
+        }
+    }
+
+    private static File write(String text) throws IOException {
+        File file = File.createTempFile("import", ".ndjson");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
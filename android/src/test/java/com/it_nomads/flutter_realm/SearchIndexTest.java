@@ -0,0 +1,94 @@
+package com.it_nomads.flutter_realm;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SearchIndexTest {
+    @Test
+    public void tokenizesLowercaseLettersAndDigitsOnce() {
+        assertEquals(Arrays.asList("morning", "walk", "2019", "caf\u00e9"),
+                SearchIndex.tokenize("Morning walk, 2019 - MORNING caf\u00c9!"));
+        assertEquals(Collections.emptyList(), SearchIndex.tokenize(null));
+        assertEquals(Collections.emptyList(), SearchIndex.tokenize(" ,.- "));
+    }
+
+    @Test
+    public void indexesEveryPrefixAtItsEarliestToken() {
+        Map<String, int[]> prefixes = SearchIndex.prefixes("Walk the walkway");
+
+        assertArrayEquals(new int[]{0, 0}, prefixes.get("wa"));
+        assertArrayEquals(new int[]{0, 1}, prefixes.get("walk"));
+        assertArrayEquals(new int[]{1, 1}, prefixes.get("the"));
+        assertArrayEquals(new int[]{2, 0}, prefixes.get("walkw"));
+        assertArrayEquals(new int[]{2, 1}, prefixes.get("walkway"));
+        assertEquals(8, prefixes.size());
+    }
+
+    @Test
+    public void indexesShortPrefixesOnlyAsWholeTokens() {
+        Map<String, int[]> prefixes = SearchIndex.prefixes("Take a walk");
+
+        assertArrayEquals(new int[]{1, 1}, prefixes.get("a"));
+        assertNull(prefixes.get("t"));
+        assertNull(prefixes.get("w"));
+    }
+
+    @Test
+    public void positionsPrefixAtALaterWholeTokenMatch() {
+        Map<String, int[]> prefixes = SearchIndex.prefixes("walkway walk");
+
+        assertArrayEquals(new int[]{1, 1}, prefixes.get("walk"));
+        assertArrayEquals(new int[]{0, 0}, prefixes.get("wal"));
+    }
+
+    @Test
+    public void ranksWholeTokenMatchesAboveEarlierPrefixMatches() {
+        Map<String, Integer> scores = new HashMap<>();
+        int[] prefix = SearchIndex.prefixes("Walkway to the sea").get("walk");
+        int[] whole = SearchIndex.prefixes("Sunday morning long walk").get("walk");
+        scores.put("prefix", SearchIndex.score(prefix[1] == 1, prefix[0]));
+        scores.put("whole", SearchIndex.score(whole[1] == 1, whole[0]));
+
+        assertEquals(Arrays.asList("whole", "prefix"), SearchIndex.rank(scores, -1));
+    }
+
+    @Test
+    public void stopsPrefixesAtMaxLength() {
+        Map<String, int[]> prefixes = SearchIndex.prefixes("abcdefghijklmnop");
+
+        assertEquals(SearchIndex.MAX_PREFIX - SearchIndex.MIN_PREFIX + 1, prefixes.size());
+        assertArrayEquals(new int[]{0, 0}, prefixes.get("abcdefghij"));
+        assertNull(prefixes.get("abcdefghijk"));
+    }
+
+    @Test
+    public void scoresWholeTokensAndEarlyPositionsHigher() {
+        assertTrue(SearchIndex.score(true, 5) > SearchIndex.score(false, 0));
+        assertTrue(SearchIndex.score(false, 0) > SearchIndex.score(false, 1));
+        assertEquals(SearchIndex.score(false, 9), SearchIndex.score(false, 50));
+        assertTrue(SearchIndex.score(false, 50) > 0);
+    }
+
+    @Test
+    public void ranksByScoreThenKey() {
+        Map<String, Integer> scores = new HashMap<>();
+        scores.put("c", 10);
+        scores.put("a", 20);
+        scores.put("d", 20);
+        scores.put("b", 10);
+
+        assertEquals(Arrays.asList("a", "d", "b", "c"), SearchIndex.rank(scores, -1));
+        assertEquals(Arrays.asList("a", "d"), SearchIndex.rank(scores, 2));
+        assertEquals(Arrays.asList("a", "d", "b", "c"), SearchIndex.rank(scores, 10));
+        assertEquals(Collections.emptyList(), SearchIndex.rank(scores, 0));
+    }
+}
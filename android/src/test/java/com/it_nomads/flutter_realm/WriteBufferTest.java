@@ -0,0 +1,82 @@
+package com.it_nomads.flutter_realm;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WriteBufferTest {
+    @Test
+    public void mergesUpdatesPerObjectWithLastValueWinning() {
+        WriteBuffer buffer = new WriteBuffer();
+        buffer.add("Recording", "a", values("title", "first", "duration", 1.0));
+        buffer.add("Recording", "a", values("title", "second"));
+
+        List<WriteBuffer.Entry> entries = buffer.drain();
+        assertEquals(1, entries.size());
+        assertEquals(values("title", "second", "duration", 1.0), entries.get(0).value);
+    }
+
+    @Test
+    public void keepsOrderOfFirstUpdate() {
+        WriteBuffer buffer = new WriteBuffer();
+        buffer.add("Recording", "b", values("title", "b"));
+        buffer.add("Recording", "a", values("title", "a"));
+        buffer.add("Recording", "b", values("title", "b2"));
+        buffer.add("Product", "b", values("title", "product"));
+
+        List<WriteBuffer.Entry> entries = buffer.drain();
+        assertEquals(3, entries.size());
+        assertEquals("b", entries.get(0).primaryKey);
+        assertEquals("a", entries.get(1).primaryKey);
+        assertEquals("Product", entries.get(2).className);
+    }
+
+    @Test
+    public void integerAndLongKeysNameTheSameObject() {
+        WriteBuffer buffer = new WriteBuffer();
+        buffer.add("Product", 1, values("title", "int"));
+        buffer.add("Product", 1L, values("title", "long"));
+
+        List<WriteBuffer.Entry> entries = buffer.drain();
+        assertEquals(1, entries.size());
+        assertEquals(1L, entries.get(0).primaryKey);
+        assertEquals("long", entries.get(0).value.get("title"));
+    }
+
+    @Test
+    public void drainEmptiesTheBuffer() {
+        WriteBuffer buffer = new WriteBuffer();
+        assertTrue(buffer.isEmpty());
+        buffer.add("Recording", "a", Collections.emptyMap());
+        assertFalse(buffer.isEmpty());
+
+        buffer.drain();
+        assertTrue(buffer.isEmpty());
+        assertTrue(buffer.drain().isEmpty());
+    }
+
+    @Test
+    public void laterUpdatesDoNotChangeDrainedEntries() {
+        WriteBuffer buffer = new WriteBuffer();
+        buffer.add("Recording", "a", values("title", "first"));
+        WriteBuffer.Entry drained = buffer.drain().get(0);
+        buffer.add("Recording", "a", values("title", "second"));
+
+        assertEquals("first", drained.value.get("title"));
+    }
+
+    private static Map<Object, Object> values(Object... keysAndValues) {
+        HashMap<Object, Object> map = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            map.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return map;
+    }
+}
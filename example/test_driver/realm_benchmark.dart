@@ -0,0 +1,150 @@
+import 'dart:convert';
+import 'dart:typed_data';
+
+import 'package:flutter/material.dart';
+import 'package:flutter_driver/driver_extension.dart';
+import 'package:flutter_realm/flutter_realm.dart';
+import 'package:flutter_realm_example/app.dart';
+
+/// Seeds a throwaway in-memory realm with synthetic recordings and times the
+/// native conversion (`objects`, paged, as maps and as `columnar`), query
+/// building (`count` with a predicate) and write (`batch` updates) paths
+/// using the plugin's own metrics.
+///
+/// Driven by `realm_benchmark_test.dart` with messages of the form
+/// `benchmark:<rows>:<thumbnails>`.
+void main() {
+  enableFlutterDriverExtension(handler: (message) async {
+    final parts = message.split(':');
+    if (parts.length == 3 && parts[0] == 'benchmark') {
+      final result = await _benchmark(int.parse(parts[1]), parts[2] == 'true');
+      return jsonEncode(result);
+    }
+    return '"$message" is not implemented';
+  });
+
+  runApp(MyApp());
+}
+
+const _seedChunk = 1000;
+const _pageSize = 1000;
+const _iterations = 5;
+
+Future<Map<String, dynamic>> _benchmark(int rows, bool thumbnails) async {
+  final realm = await Realm.open(Configuration(
+    inMemoryIdentifier: 'benchmark-$rows-$thumbnails',
+    metrics: true,
+  ));
+  try {
+    await realm.deleteAllObjects();
+    for (var start = 0; start < rows; start += _seedChunk) {
+      final batch = WriteBatch();
+      for (var i = start; i < rows && i < start + _seedChunk; i++) {
+        batch.create('Recording', _recording(i, thumbnails));
+      }
+      await realm.batch(batch);
+    }
+
+    await realm.metrics(reset: true);
+    final mapsWatch = Stopwatch()..start();
+    for (var i = 0; i < _iterations; i++) {
+      await _readAllPages(realm, columnar: false);
+    }
+    mapsWatch.stop();
+    final reads = await realm.metrics(reset: true);
+
+    final columnarWatch = Stopwatch()..start();
+    for (var i = 0; i < _iterations; i++) {
+      await _readAllPages(realm, columnar: true);
+    }
+    columnarWatch.stop();
+    final columnarReads = await realm.metrics(reset: true);
+
+    final query = Query('Recording').equalTo('scheduleId', 'schedule-1');
+    for (var i = 0; i < _iterations; i++) {
+      await realm.count(query);
+    }
+    final queries = await realm.metrics(reset: true);
+
+    final updates = WriteBatch();
+    for (var i = 0; i < rows && i < _seedChunk; i++) {
+      updates.update('Recording',
+          primaryKey: 'recording-$i', value: {'title': 'Updated $i'});
+    }
+    await realm.batch(updates);
+    final writes = await realm.metrics();
+
+    final objects = _method(reads, 'objects');
+    final columnarObjects = _method(columnarReads, 'objects');
+    final count = _method(queries, 'count');
+    final batch = _method(writes, 'batch');
+    final converted = reads['objectsConverted'] as int;
+
+    return {
+      'convertObjectsPerSecond': _perSecond(converted, objects['totalMicros']),
+      'columnarConvertObjectsPerSecond': _perSecond(
+          columnarReads['objectsConverted'], columnarObjects['totalMicros']),
+      // End to end: native query and encoding, the channel and reading a
+      // field of every object on the Dart side.
+      'mapsReadObjectsPerSecond':
+          _perSecond(rows * _iterations, mapsWatch.elapsedMicroseconds),
+      'columnarReadObjectsPerSecond':
+          _perSecond(rows * _iterations, columnarWatch.elapsedMicroseconds),
+      'queryOpsPerSecond': _perSecond(count['count'], count['totalMicros']),
+      'updateObjectsPerSecond': _perSecond(
+          rows < _seedChunk ? rows : _seedChunk, batch['totalMicros']),
+      'payloadBytesPerObject':
+          converted == 0 ? 0 : reads['payloadBytes'] ~/ converted,
+    };
+  } finally {
+    await realm.deleteAllObjects();
+    await realm.close();
+  }
+}
+
+/// Reads every recording in pages of [_pageSize], so no single channel
+/// message has to carry the whole dataset, and reads the title of each one.
+Future<void> _readAllPages(Realm realm, {bool columnar}) async {
+  PageCursor cursor;
+  while (true) {
+    final page = await realm.objects(Query('Recording'),
+        limit: _pageSize,
+        sort: [SortBy('createdAt'), SortBy('uuid')],
+        after: cursor,
+        columnar: columnar);
+    final result = page.result;
+    for (var i = 0; i < result.length; i++) {
+      final title = result is ColumnarResult
+          ? result.value(i, 'title')
+          : result[i]['title'];
+      if (title == null) throw StateError('Recording without title');
+    }
+    if (result.length < _pageSize) return;
+    cursor = page.cursor;
+  }
+}
+
+Map<String, dynamic> _method(Map<String, dynamic> metrics, String method) =>
+    Map<String, dynamic>.from(
+        Map<String, dynamic>.from(metrics['methods'])[method]);
+
+double _perSecond(int operations, int micros) =>
+    micros == 0 ? 0 : operations * 1000000 / micros;
+
+Map<String, dynamic> _recording(int i, bool thumbnails) => {
+      'uuid': 'recording-$i',
+      'createdAt': 1500000000000 + i * 1000,
+      'videoWidth': 1920,
+      'videoHeight': 1080,
+      'scheduleId': 'schedule-${i % 50}',
+      'title': 'Recording $i',
+      'duration': 30.0 + i % 600,
+      'thumbnailWidth': thumbnails ? 160 : 0,
+      'thumbnailHeight': thumbnails ? 90 : 0,
+      'thumbnailData': thumbnails ? Uint8List(8 * 1024) : null,
+      'frameRate': 30.0,
+      'fileSize': 1024 * 1024 + i,
+      'digest': 'digest-$i',
+      'path': '/recordings/recording-$i.mp4',
+      'mimeType': 'video/mp4',
+    };
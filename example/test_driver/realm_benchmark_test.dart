@@ -0,0 +1,74 @@
+import 'dart:convert';
+import 'dart:io';
+
+import 'package:flutter_driver/flutter_driver.dart';
+import 'package:test/test.dart';
+
+/// Optional end-to-end check: runs the benchmark scenarios on the connected
+/// device and compares them with `benchmark_baselines.json`, recorded on that
+/// device. A throughput more than [_tolerance] below its baseline fails the
+/// run; scenarios without a baseline are only reported. Set
+/// `UPDATE_BASELINES=true` to store the measured values as the new baselines.
+/// From 10k rows on, reading as `columnar` must also beat reading maps.
+///
+/// Regressions in the native conversion, query binding and write paths are
+/// caught by the JVM benchmarks in `android/benchmark`, which keep their
+/// baselines in the repository.
+const _tolerance = 0.2;
+
+void main() {
+  const rowCounts = [1000, 10000, 100000];
+  final baselinesFile = File('test_driver/benchmark_baselines.json');
+  final update = Platform.environment['UPDATE_BASELINES'] == 'true';
+
+  FlutterDriver driver;
+  Map<String, dynamic> baselines;
+  final measured = <String, dynamic>{};
+
+  setUpAll(() async {
+    driver = await FlutterDriver.connect();
+    baselines = jsonDecode(baselinesFile.readAsStringSync());
+  });
+
+  tearDownAll(() async {
+    if (update) {
+      baselinesFile.writeAsStringSync(
+          JsonEncoder.withIndent('  ').convert(measured) + '\n');
+    }
+    if (driver != null) driver.close();
+  });
+
+  for (final rows in rowCounts) {
+    for (final thumbnails in [false, true]) {
+      final name = '$rows rows${thumbnails ? ' with thumbnails' : ''}';
+      test(name, () async {
+        final result = jsonDecode(await driver.requestData(
+            'benchmark:$rows:$thumbnails',
+            timeout: Duration(minutes: 10)));
+        measured[name] = result;
+        print('$name: $result');
+
+        if (rows >= 10000) {
+          // The columnar format is only worth having if it beats maps.
+          expect(result['columnarReadObjectsPerSecond'],
+              greaterThan(result['mapsReadObjectsPerSecond']),
+              reason: 'columnar is not faster than maps');
+        }
+
+        if (update) return;
+        final baseline = baselines[name];
+        if (baseline == null) {
+          print('No baseline for "$name" on this device, '
+              'record one with UPDATE_BASELINES=true');
+          return;
+        }
+        for (final key in (baseline as Map<String, dynamic>).keys) {
+          if (!key.endsWith('PerSecond')) continue;
+          expect(result[key],
+              greaterThanOrEqualTo(baseline[key] * (1 - _tolerance)),
+              reason: '$key regressed');
+        }
+      }, timeout: Timeout(Duration(minutes: 15)));
+    }
+  }
+}
@@ -21,6 +21,7 @@ NS_ASSUME_NONNULL_BEGIN
 - (void)handleMethodCall:(FlutterMethodCall *)call result:(FlutterResult)result;
 
 - (void)reset;
+- (void)close;
 
 @end
 
@@ -418,11 +418,15 @@
 }
 
 - (void)reset {
+    [self close];
+    [self deleteAllObjects];
+}
+
+- (void)close {
     for (RLMNotificationToken *token in self.tokens.allValues) {
         [token invalidate];
     }
     [self.tokens removeAllObjects];
-    [self deleteAllObjects];
 }
 
 
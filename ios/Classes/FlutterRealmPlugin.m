@@ -59,6 +59,12 @@ static NSString *const CHANNEL_NAME = @"plugins.it_nomads.com/flutter_realm";
             
             [self.realms removeAllObjects];
             
+            result(nil);
+        } else if ([@"close" isEqualToString:method]){
+            NSString *realmId = arguments[@"realmId"];
+            [self.realms[realmId] close];
+            [self.realms removeObjectForKey:realmId];
+
             result(nil);
         } else if ([@"asyncOpenWithConfiguration" isEqualToString:method]){
             [self handleAsyncOpenWithConfiguration:arguments result:result];
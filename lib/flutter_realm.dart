@@ -1,6 +1,8 @@
 library flutter_realm;
 
 import 'dart:async';
+import 'dart:collection';
+import 'dart:convert';
 import 'dart:typed_data';
 
 import 'package:flutter/services.dart';
@@ -9,6 +11,7 @@ import 'package:rxdart/rxdart.dart';
 import 'package:uuid/uuid.dart';
 
 part 'src/auth_credentials.dart';
+part 'src/columnar_result.dart';
 part 'src/method_channel_transport.dart';
 part 'src/realm.dart';
 part 'src/sync_user.dart';
@@ -0,0 +1,174 @@
+part of flutter_realm;
+
+/// Read-only view over a result buffer sent with the `columnar` format.
+///
+/// Only the header and column directory are parsed up front; a row becomes a
+/// map when it is accessed, and single values can be read with [value]
+/// without building any map.
+class ColumnarResult extends ListBase<Map<String, dynamic>> {
+  static const _magic = 0x31435246;
+
+  static const _typeInt64 = 1;
+  static const _typeDouble = 2;
+  static const _typeBool = 3;
+  static const _typeString = 4;
+  static const _typeBinary = 5;
+  static const _typeFloat = 6;
+  static const _typeDate = 7;
+  static const _typeIntList = 8;
+  static const _typeStringList = 9;
+
+  final Uint8List _bytes;
+  final ByteData _data;
+  final int _rowCount;
+  final List<int> _stringOffsets;
+  final List<String> _strings;
+  final List<_ColumnarColumn> _columns;
+  final Map<String, _ColumnarColumn> _columnsByName;
+
+  ColumnarResult._(this._bytes, this._rowCount, this._stringOffsets,
+      this._columns)
+      : _data = ByteData.view(
+            _bytes.buffer, _bytes.offsetInBytes, _bytes.lengthInBytes),
+        _strings = List<String>.filled(_stringOffsets.length, null),
+        _columnsByName = <String, _ColumnarColumn>{};
+
+  factory ColumnarResult(Uint8List bytes) {
+    final data =
+        ByteData.view(bytes.buffer, bytes.offsetInBytes, bytes.lengthInBytes);
+    if (data.getInt32(0, Endian.little) != _magic) {
+      throw FormatException('Not a columnar result');
+    }
+    final rowCount = data.getInt32(4, Endian.little);
+    final columnCount = data.getInt32(8, Endian.little);
+    final stringCount = data.getInt32(12, Endian.little);
+
+    var offset = 16;
+    final stringOffsets = List<int>.filled(stringCount, 0);
+    for (var i = 0; i < stringCount; i++) {
+      stringOffsets[i] = offset;
+      offset += 4 + data.getInt32(offset, Endian.little);
+    }
+
+    final columns = <_ColumnarColumn>[];
+    for (var i = 0; i < columnCount; i++) {
+      final nameIndex = data.getInt32(offset, Endian.little);
+      final type = data.getInt32(offset + 4, Endian.little);
+      final bodyLength = data.getInt32(offset + 8, Endian.little);
+      columns.add(_ColumnarColumn(nameIndex, type, offset + 12, rowCount));
+      offset += 12 + bodyLength;
+    }
+
+    final result = ColumnarResult._(bytes, rowCount, stringOffsets, columns);
+    for (final column in columns) {
+      column.name = result._string(column.nameIndex);
+      result._columnsByName[column.name] = column;
+    }
+    return result;
+  }
+
+  List<String> get columnNames =>
+      _columns.map((column) => column.name).toList();
+
+  @override
+  int get length => _rowCount;
+
+  @override
+  set length(int newLength) =>
+      throw UnsupportedError('ColumnarResult is read-only');
+
+  @override
+  Map<String, dynamic> operator [](int row) {
+    RangeError.checkValidIndex(row, this);
+    final map = <String, dynamic>{};
+    for (final column in _columns) {
+      if (_isPresent(column, row)) {
+        map[column.name] = _read(column, row);
+      }
+    }
+    return map;
+  }
+
+  @override
+  void operator []=(int index, Map<String, dynamic> value) =>
+      throw UnsupportedError('ColumnarResult is read-only');
+
+  /// Reads a single value without materializing the row.
+  dynamic value(int row, String columnName) {
+    RangeError.checkValidIndex(row, this);
+    final column = _columnsByName[columnName];
+    if (column == null || !_isPresent(column, row)) {
+      return null;
+    }
+    return _read(column, row);
+  }
+
+  bool _isPresent(_ColumnarColumn column, int row) =>
+      _bytes[column.bitmapOffset + (row >> 3)] & (1 << (row & 7)) != 0;
+
+  String _string(int index) {
+    if (index < 0) return null;
+    var value = _strings[index];
+    if (value == null) {
+      final offset = _stringOffsets[index];
+      final length = _data.getInt32(offset, Endian.little);
+      value = utf8.decode(
+          Uint8List.view(_bytes.buffer, _bytes.offsetInBytes + offset + 4,
+              length),
+          allowMalformed: true);
+      _strings[index] = value;
+    }
+    return value;
+  }
+
+  dynamic _read(_ColumnarColumn column, int row) {
+    final values = column.valuesOffset;
+    switch (column.type) {
+      case _typeInt64:
+        return _data.getInt64(values + row * 8, Endian.little);
+      case _typeDouble:
+        return _data.getFloat64(values + row * 8, Endian.little);
+      case _typeBool:
+        return _bytes[values + row] != 0;
+      case _typeString:
+        return _string(_data.getInt32(values + row * 4, Endian.little));
+      case _typeFloat:
+        return _data.getFloat32(values + row * 4, Endian.little);
+      case _typeDate:
+        return DateTime.fromMillisecondsSinceEpoch(
+            _data.getInt64(values + row * 8, Endian.little));
+    }
+
+    final start = _data.getInt32(values + row * 4, Endian.little);
+    final end = _data.getInt32(values + row * 4 + 4, Endian.little);
+    final payload = values + (_rowCount + 1) * 4;
+    switch (column.type) {
+      case _typeBinary:
+        return Uint8List.view(
+            _bytes.buffer, _bytes.offsetInBytes + payload + start, end - start);
+      case _typeIntList:
+        return [
+          for (var i = start; i < end; i++)
+            _data.getInt64(payload + i * 8, Endian.little)
+        ];
+      case _typeStringList:
+        return [
+          for (var i = start; i < end; i++)
+            _string(_data.getInt32(payload + i * 4, Endian.little))
+        ];
+      default:
+        throw UnsupportedError('Unknown column type ${column.type}');
+    }
+  }
+}
+
+class _ColumnarColumn {
+  final int nameIndex;
+  final int type;
+  final int bitmapOffset;
+  final int valuesOffset;
+  String name;
+
+  _ColumnarColumn(this.nameIndex, this.type, this.bitmapOffset, int rowCount)
+      : valuesOffset = bitmapOffset + (rowCount + 7) ~/ 8;
+}
@@ -14,16 +14,41 @@ Map<String, dynamic> _asStringKeyedMap(Map<dynamic, dynamic> map) {
 class QueryResult {
   final int count;
   final List result;
-  QueryResult({this.count, this.result});
+
+  /// With a `sort`, pass this as `after` to get the next page.
+  final PageCursor cursor;
+
+  QueryResult({this.count, this.result, this.cursor});
 
   factory QueryResult.fromMap(Map<String, dynamic> map) {
+    final columnar = map['columnar'];
+    final cursor = map['cursor'];
     return QueryResult(
       count: map['count'],
-      result: map['results'],
+      result: columnar != null ? ColumnarResult(columnar) : map['results'],
+      cursor: cursor != null ? PageCursor._(cursor) : null,
     );
   }
 }
 
+/// One field of a multi-field sort. Keyset pagination compares numbers and
+/// dates; a string field, such as the primary key, may only come last.
+class SortBy {
+  final String field;
+  final bool ascending;
+
+  const SortBy(this.field, {this.ascending = true});
+
+  List toList() => [field, ascending];
+}
+
+/// Position after the last object of a page, see [Realm.objects].
+class PageCursor {
+  final Map _value;
+
+  PageCursor._(this._value);
+}
+
 class Realm {
   final _channel = MethodChannelTransport(_uuid.v4());
   final _unsubscribing = Set<String>();
@@ -67,19 +92,46 @@ class Realm {
   void _handleMethodCall(MethodCall call) {
     switch (call.method) {
       case 'onResultsChange':
-        final subscriptionId = call.arguments['subscriptionId'];
-        if (_unsubscribing.contains(subscriptionId)) {
-          return;
+        final arguments = _asStringKeyedMap(call.arguments);
+        // Identical queries share one native subscription, so a single
+        // notification can be addressed to several subscriptions.
+        final subscriptionIds = arguments['subscriptionIds'] ??
+            [arguments['subscriptionId']];
+        for (final subscriptionId in subscriptionIds) {
+          if (_unsubscribing.contains(subscriptionId)) {
+            continue;
+          }
+
+          if (subscriptionId == null ||
+              !_subscriptions.containsKey(subscriptionId)) {
+            throw ('Unknown subscriptionId: [$subscriptionId]. Call: $call');
+          }
+          // ignore: close_sinks
+          final controller = _subscriptions[subscriptionId];
+          if (arguments.containsKey('deletions')) {
+            final previous = controller.hasValue ? controller.value : null;
+            controller.add(_applyDelta(previous, arguments));
+          } else {
+            controller.add(QueryResult.fromMap(arguments));
+          }
         }
 
-        if (subscriptionId == null ||
-            !_subscriptions.containsKey(subscriptionId)) {
-          throw ('Unknown subscriptionId: [$subscriptionId]. Call: $call');
+        break;
+      case 'onImportProgress':
+        final arguments = _asStringKeyedMap(call.arguments);
+        final listener = _importListeners[arguments['importId']];
+        if (listener != null) {
+          listener(ImportProgress._(
+              arguments['rows'], arguments['bytes'], arguments['totalBytes']));
+        }
+        break;
+      case 'onWriteErrors':
+        final arguments = _asStringKeyedMap(call.arguments);
+        for (final error in arguments['errors']) {
+          final map = _asStringKeyedMap(error);
+          _writeErrors.add(
+              WriteError._(map['\$'], map['primaryKey'], map['message']));
         }
-        // ignore: close_sinks
-        final controller = _subscriptions[subscriptionId];
-        controller.add(QueryResult.fromMap(_asStringKeyedMap(call.arguments)));
-
         break;
       default:
         throw ('Unknown method: $call');
@@ -87,27 +139,85 @@ class Realm {
     }
   }
 
-  Future<void> deleteAllObjects() => _channel.invokeMethod('deleteAllObjects');
+  /// Applies a change set from a `deltas` subscription: deletions refer to the
+  /// previous results, insertions and modifications to the new ones.
+  QueryResult _applyDelta(QueryResult previous, Map<String, dynamic> delta) {
+    final results = List.of(previous?.result ?? const []);
+    final List<int> deletions = delta['deletions'];
+    for (var i = deletions.length - 1; i >= 0; i--) {
+      results.removeAt(deletions[i]);
+    }
+    final List<int> insertions = delta['insertions'];
+    final List insertedObjects = delta['insertedObjects'];
+    for (var i = 0; i < insertions.length; i++) {
+      results.insert(insertions[i], insertedObjects[i]);
+    }
+    final List<int> modifications = delta['modifications'];
+    final List modifiedObjects = delta['modifiedObjects'];
+    for (var i = 0; i < modifications.length; i++) {
+      results[modifications[i]] = modifiedObjects[i];
+    }
+    return QueryResult(count: delta['count'], result: results);
+  }
+
+  Future<void> deleteAllObjects() => _invokeMethod('deleteAllObjects', {});
 
   static Future<void> reset() => MethodChannelTransport.reset();
 
-  void close() {
+  /// Cancels all subscriptions and closes the native realm, which releases
+  /// its thread and file handles. The realm can't be used afterwards.
+  Future<void> close() async {
     final ids = _subscriptions.keys.toList();
     for (final subscriptionId in ids) {
       _unsubscribe(subscriptionId);
     }
     _subscriptions.clear();
+    // Pending buffered updates are written first, so their errors come in
+    // before this returns.
+    await _invokeMethod('close', {});
+    await _writeErrors.close();
   }
 
   Future<T> _invokeMethod<T>(String method, [dynamic arguments]) =>
       _channel.invokeMethod(method, arguments);
 
   final Map<String, BehaviorSubject<QueryResult>> _subscriptions = {};
+  final Map<String, void Function(ImportProgress)> _importListeners = {};
+  final _writeErrors = StreamController<WriteError>.broadcast();
+
+  /// Updates held back by [Configuration.writeBuffer] that failed when they
+  /// were written, e.g. because of a value of the wrong type or because the
+  /// object was deleted in the meantime.
+  Stream<WriteError> get writeErrors => _writeErrors.stream;
+
+  /// With [columnar] the objects arrive as one buffer and are returned as a
+  /// [ColumnarResult], which builds each map only when it is read.
+  Future<List> allObjects(String className,
+      {List<String> fields,
+      List<String> excludeFields,
+      bool columnar = false}) async {
+    final map = await _invokeMethod('allObjects', {
+      '\$': className,
+      'fields': fields,
+      'excludeFields': excludeFields,
+      'format': columnar ? 'columnar' : null
+    });
+    return QueryResult.fromMap(_asStringKeyedMap(map)).result;
+  }
 
-  Future<List> allObjects(String className) =>
-      _invokeMethod('allObjects', {'\$': className});
-
-  Stream<QueryResult> subscribeAllObjects(String className) {
+  /// With [deltas] only the changed objects cross the channel after the
+  /// first snapshot; the stream still emits complete results.
+  ///
+  /// [fields] limits the objects to the listed fields, [excludeFields] drops
+  /// the listed ones (e.g. large binary fields, see [binaryField]).
+  ///
+  /// With [throttle] at most one result is emitted per interval; changes in
+  /// between are merged into the next one.
+  Stream<QueryResult> subscribeAllObjects(String className,
+      {bool deltas = false,
+      List<String> fields,
+      List<String> excludeFields,
+      Duration throttle}) {
     final subscriptionId =
         'subscribeAllObjects:' + className + ':' + _uuid.v4();
 
@@ -119,12 +229,25 @@ class Realm {
     _invokeMethod('subscribeAllObjects', {
       '\$': className,
       'subscriptionId': subscriptionId,
+      'deltas': deltas,
+      'fields': fields,
+      'excludeFields': excludeFields,
+      'throttle': throttle?.inMilliseconds,
     });
 
     return controller;
   }
 
-  Stream<QueryResult> subscribeObjects(Query query, {int limit = -1}) {
+  /// See [subscribeAllObjects] for [deltas], [fields], [excludeFields] and
+  /// [throttle].
+  Stream<QueryResult> subscribeObjects(Query query,
+      {int limit = -1,
+      bool deltas = false,
+      List<String> fields,
+      List<String> excludeFields,
+      Duration throttle,
+      List<SortBy> sort,
+      PageCursor after}) {
     final subscriptionId =
         'subscribeObjects:' + query.className + ':' + _uuid.v4();
 
@@ -138,24 +261,137 @@ class Realm {
       '\$': query.className,
       'predicate': query._container,
       'subscriptionId': subscriptionId,
-      'limit': limit
+      'limit': limit,
+      'sort': sort?.map((s) => s.toList())?.toList(),
+      'after': after?._value,
+      'deltas': deltas,
+      'fields': fields,
+      'excludeFields': excludeFields,
+      'throttle': throttle?.inMilliseconds
     });
 
     return controller.stream;
   }
 
+  /// With [sort] (which takes precedence over [orderBy]) the result carries a
+  /// [QueryResult.cursor]; passing it as [after] returns the next [limit]
+  /// objects at the same cost as the first page. End [sort] with a unique
+  /// field so no two objects compare equal.
   Future<QueryResult> objects(Query query,
-      {int limit = -1, String orderBy, bool ascending = true}) async {
+      {int limit = -1,
+      String orderBy,
+      bool ascending = true,
+      List<SortBy> sort,
+      PageCursor after,
+      List<String> fields,
+      List<String> excludeFields,
+      bool columnar = false}) async {
     final map = await _invokeMethod('objects', {
       '\$': query.className,
       'predicate': query._container,
       'limit': limit,
+      'sort': sort?.map((s) => s.toList())?.toList(),
+      'after': after?._value,
       'orderBy': orderBy,
-      'ascending': ascending
+      'ascending': ascending,
+      'fields': fields,
+      'excludeFields': excludeFields,
+      'format': columnar ? 'columnar' : null
     });
     return QueryResult.fromMap(_asStringKeyedMap(map));
   }
 
+  /// Streams the objects matching [query] in chunks of [chunkSize]. The
+  /// results are a consistent snapshot taken when the stream is listened to.
+  /// The next chunk is only fetched once the previous one was delivered and
+  /// the subscription isn't paused; cancelling releases the native results.
+  Stream<List<Map>> objectsInChunks(Query query,
+      {int chunkSize = 500,
+      int limit = -1,
+      String orderBy,
+      bool ascending = true,
+      List<String> fields,
+      List<String> excludeFields}) {
+    final streamId = _uuid.v4();
+    StreamController<List<Map>> controller;
+    StreamSubscription events;
+    var total = 0;
+    var received = 0;
+    var requested = false;
+    var cancelled = false;
+
+    void requestNext() {
+      if (requested || controller.isPaused || received >= total) return;
+      requested = true;
+      _invokeMethod('streamNext', {'streamId': streamId})
+          .catchError(controller.addError);
+    }
+
+    controller = StreamController<List<Map>>(
+      onListen: () async {
+        try {
+          total = await _invokeMethod('openStream', {
+            '\$': query.className,
+            'streamId': streamId,
+            'chunkSize': chunkSize,
+            'predicate': query._container,
+            'limit': limit,
+            'orderBy': orderBy,
+            'ascending': ascending,
+            'fields': fields,
+            'excludeFields': excludeFields,
+          });
+        } catch (error) {
+          controller.addError(error);
+          await controller.close();
+          return;
+        }
+        if (cancelled) {
+          await _invokeMethod('closeStream', {'streamId': streamId});
+          return;
+        }
+        // The first chunk is sent as soon as the native side sees the listener.
+        requested = true;
+        events = EventChannel(
+                'plugins.it_nomads.com/flutter_realm/stream/$streamId')
+            .receiveBroadcastStream()
+            .listen((chunk) {
+          requested = false;
+          received += chunk.length;
+          controller.add(List<Map>.from(chunk));
+          requestNext();
+        }, onError: controller.addError, onDone: controller.close);
+      },
+      onResume: requestNext,
+      onCancel: () {
+        cancelled = true;
+        return events?.cancel();
+      },
+    );
+    return controller.stream;
+  }
+
+  /// Number of objects matching [query], without fetching any of them.
+  Future<int> count(Query query) => _invokeMethod('count', {
+        '\$': query.className,
+        'predicate': query._container,
+      });
+
+  /// Evaluates [aggregates] natively over the objects matching [query], either
+  /// once or per distinct value of [groupBy].
+  Future<List<AggregateRow>> aggregate(Query query, List<Aggregate> aggregates,
+      {String groupBy}) async {
+    final List rows = await _invokeMethod('aggregate', {
+      '\$': query.className,
+      'predicate': query._container,
+      'aggregates': aggregates.map((aggregate) => aggregate._toList()).toList(),
+      'groupBy': groupBy,
+    });
+    return rows
+        .map((row) => AggregateRow._fromMap(_asStringKeyedMap(row)))
+        .toList();
+  }
+
   Future<Map<String, dynamic>> createObject(
       String className, Map<String, dynamic> object) async {
     final map = await _invokeMethod(
@@ -164,14 +400,52 @@ class Realm {
   }
 
   Future<Map<String, dynamic>> object(String className,
-      {@required dynamic primaryKey}) async {
+      {@required dynamic primaryKey,
+      List<String> fields,
+      List<String> excludeFields}) async {
     final map = await _invokeMethod('object', {
       '\$': className,
       'primaryKey': primaryKey,
+      'fields': fields,
+      'excludeFields': excludeFields,
     });
     return _asStringKeyedMap(map);
   }
 
+  /// Primary keys of the recordings whose title has a word starting with
+  /// every word of [query], best matches first (Android only). One-letter
+  /// words of [query] only match whole words. Backed by an index the plugin
+  /// keeps up to date on every write.
+  Future<List<String>> search(String query, {int limit = 20}) async {
+    final List list =
+        await _invokeMethod('search', {'query': query, 'limit': limit});
+    return list.cast<String>();
+  }
+
+  /// Fetches the objects with the given [primaryKeys] in one round trip. The
+  /// result is aligned with [primaryKeys], with null for keys not found.
+  Future<List<Map<String, dynamic>>> objectsByPrimaryKeys(
+      String className, List primaryKeys,
+      {List<String> fields, List<String> excludeFields}) async {
+    final List list = await _invokeMethod('objectsByPrimaryKeys', {
+      '\$': className,
+      'primaryKeys': primaryKeys,
+      'fields': fields,
+      'excludeFields': excludeFields,
+    });
+    return list.map((map) => _asStringKeyedMap(map)).toList();
+  }
+
+  /// Loads a single binary field, e.g. a thumbnail left out of a listing
+  /// with `excludeFields`.
+  Future<Uint8List> binaryField(String className,
+          {@required dynamic primaryKey, @required String field}) =>
+      _invokeMethod('binaryField', {
+        '\$': className,
+        'primaryKey': primaryKey,
+        'field': field,
+      });
+
   Future _unsubscribe(String subscriptionId) async {
     if (!_subscriptions.containsKey(subscriptionId)) {
       return;
@@ -184,6 +458,9 @@ class Realm {
     _unsubscribing.remove(subscriptionId);
   }
 
+  /// Updates the object and returns it, or returns null right away when the
+  /// realm was opened with [Configuration.writeBuffer]. Buffered updates that
+  /// fail later are reported through [writeErrors] and [flush].
   Future<Map<String, dynamic>> update(String className,
       {@required dynamic primaryKey,
       @required Map<String, dynamic> value}) async {
@@ -196,6 +473,11 @@ class Realm {
     return _asStringKeyedMap(map);
   }
 
+  /// Writes updates held back by [Configuration.writeBuffer] now. Throws a
+  /// [PlatformException] whose details list the buffered updates that failed
+  /// since the previous [flush], if any did.
+  Future<void> flush() => _invokeMethod('flush', {});
+
   Future delete(String className, {@required dynamic primaryKey}) {
     return _invokeMethod('deleteObject', {
       '\$': className,
@@ -203,6 +485,12 @@ class Realm {
     });
   }
 
+  /// Applies all operations of [batch] in a single transaction. Returns one
+  /// entry per operation (the updated object for updates, null otherwise);
+  /// if any operation fails nothing is written.
+  Future<List> batch(WriteBatch batch) =>
+      _invokeMethod('batch', {'operations': batch._operations});
+
   Future<int> deleteRecording(
       {@required dynamic primaryKey, String scheduleId}) {
     return _invokeMethod('deleteRecording',
@@ -249,7 +537,71 @@ class Realm {
     return QueryResult.fromMap(_asStringKeyedMap(map));
   }
 
-  Future<String> filePath() => _invokeMethod('filePath');
+  /// Imports the newline-delimited JSON objects in the local file at [path]
+  /// as [className] objects natively, committing every [chunkSize] records
+  /// (Android only). Objects whose primary key already exists are updated.
+  /// DATE fields take milliseconds, BINARY fields base64 strings.
+  ///
+  /// [onProgress] is called after every commit. An interrupted import can be
+  /// continued from its last commit with [resume]; the checkpoint is kept
+  /// next to the realm file, so [path] may be read-only. Blank lines are
+  /// skipped. Returns the total number of rows imported.
+  Future<int> importFile(String className, String path,
+      {int chunkSize = 500,
+      bool resume = false,
+      void Function(ImportProgress) onProgress}) async {
+    final importId = _uuid.v4();
+    if (onProgress != null) {
+      _importListeners[importId] = onProgress;
+    }
+    try {
+      final map = await _invokeMethod('importFile', {
+        '\$': className,
+        'path': path,
+        'importId': importId,
+        'chunkSize': chunkSize,
+        'resume': resume,
+      });
+      return map['rows'];
+    } finally {
+      _importListeners.remove(importId);
+    }
+  }
+
+  /// Moves thumbnails still stored inline into the blob store, committing
+  /// [chunkSize] recordings at a time. Returns the number moved.
+  Future<int> migrateThumbnails({int chunkSize = 100}) =>
+      _invokeMethod('migrateThumbnails', {'chunkSize': chunkSize});
+
+  /// Latency histograms (microseconds, per method, for subscription
+  /// notifications and for write transactions) and conversion counters
+  /// collected since the realm was opened with [Configuration.metrics]
+  /// (Android only). With [reset] the counters start over afterwards.
+  /// On Android 6+ `runtimeBytesAllocated` is the process-wide Java heap
+  /// allocation so far, for diffing between two calls.
+  Future<Map<String, dynamic>> metrics({bool reset = false}) async {
+    final map = await _invokeMethod('metrics', {'reset': reset});
+    return _asStringKeyedMap(map);
+  }
+
+  /// Compacts the realm file now (Android only). Skipped while any
+  /// subscription or chunked stream is active; the returned map tells whether
+  /// it ran (`compacted`) and the file size before and after. With
+  /// [Configuration.blobStore] the thumbnail file is compacted too, under the
+  /// same condition (`blobStoreSizeBefore`/`blobStoreSizeAfter`).
+  Future<Map<String, dynamic>> compact() async {
+    final map = await _invokeMethod('compact', {});
+    return _asStringKeyedMap(map);
+  }
+
+  /// Current file sizes and, with [Configuration.compactOnLaunch], the total
+  /// and used bytes seen when the realm was opened (Android only).
+  Future<Map<String, dynamic>> fileStats() async {
+    final map = await _invokeMethod('fileStats', {});
+    return _asStringKeyedMap(map);
+  }
+
+  Future<String> filePath() => _invokeMethod('filePath', {});
 
   @override
   bool operator ==(Object other) =>
@@ -285,16 +637,26 @@ class Query {
   Query contains(String field, String value) =>
       _pushThree('contains', field, value);
 
+  Query beginsWith(String field, String value) =>
+      _pushThree('beginsWith', field, value);
+
+  /// Inclusive range on a numeric or date field.
+  Query between(String field, dynamic low, dynamic high) =>
+      _pushThree('between', field, [_argument(low), _argument(high)]);
+
   Query isIn(String field, List value) => _pushThree('in', field, value);
 
   Query notEqualTo(String field, dynamic value) =>
       _pushThree('notEqualTo', field, value);
 
   Query _pushThree(String operator, dynamic left, dynamic right) {
-    _container.add([operator, left, right]);
+    _container.add([operator, left, _argument(right)]);
     return this;
   }
 
+  static dynamic _argument(dynamic value) =>
+      value is DateTime ? value.millisecondsSinceEpoch : value;
+
   Query _pushOne(String operator) {
     _container.add([operator]);
     return this;
@@ -310,16 +672,165 @@ class Query {
   }
 }
 
+class Aggregate {
+  final String function;
+  final String field;
+
+  const Aggregate._(this.function, [this.field]);
+
+  const Aggregate.count() : this._('count');
+
+  const Aggregate.sum(String field) : this._('sum', field);
+
+  const Aggregate.avg(String field) : this._('avg', field);
+
+  /// Dates are reported as milliseconds since epoch.
+  const Aggregate.min(String field) : this._('min', field);
+
+  /// Dates are reported as milliseconds since epoch.
+  const Aggregate.max(String field) : this._('max', field);
+
+  List _toList() => field == null ? [function] : [function, field];
+}
+
+class AggregateRow {
+  /// Value of the `groupBy` field, null without grouping.
+  final dynamic group;
+
+  /// One value per requested [Aggregate], in request order.
+  final List values;
+
+  AggregateRow._fromMap(Map<String, dynamic> map)
+      : group = map['group'],
+        values = map['values'];
+}
+
+class ImportProgress {
+  /// Rows committed so far, including those of earlier runs when resuming.
+  final int rows;
+  final int bytes;
+  final int totalBytes;
+
+  ImportProgress._(this.rows, this.bytes, this.totalBytes);
+}
+
+/// A buffered update that could not be written, see [Realm.writeErrors].
+class WriteError {
+  final String className;
+  final dynamic primaryKey;
+  final String message;
+
+  WriteError._(this.className, this.primaryKey, this.message);
+
+  @override
+  String toString() => 'WriteError($className, $primaryKey): $message';
+}
+
+class WriteBatch {
+  final List<Map<String, dynamic>> _operations = [];
+
+  WriteBatch create(String className, Map<String, dynamic> object) {
+    _operations.add(<String, dynamic>{'method': 'createObject', '\$': className}
+      ..addAll(object));
+    return this;
+  }
+
+  WriteBatch update(String className,
+      {@required dynamic primaryKey, @required Map<String, dynamic> value}) {
+    assert(value['uuid'] == null);
+    _operations.add({
+      'method': 'updateObject',
+      '\$': className,
+      'primaryKey': primaryKey,
+      'value': value,
+    });
+    return this;
+  }
+
+  WriteBatch delete(String className, {@required dynamic primaryKey}) {
+    _operations.add({
+      'method': 'deleteObject',
+      '\$': className,
+      'primaryKey': primaryKey,
+    });
+    return this;
+  }
+
+  int get length => _operations.length;
+}
+
 class Configuration {
   final String inMemoryIdentifier;
   final Uint8List encryptionKey;
 
-  const Configuration({this.inMemoryIdentifier, this.encryptionKey});
+  /// Serves this realm's calls on a dedicated native thread instead of the
+  /// platform main thread, so realms don't wait for each other's queries
+  /// (Android only).
+  final bool workerThread;
+
+  /// Stores `Recording.thumbnailData` in a memory-mapped file next to the
+  /// realm instead of inline (Android only). See [Realm.migrateThumbnails].
+  /// Space of replaced and deleted thumbnails is reclaimed automatically once
+  /// it is at least 8 MB and half of the file, when the realm is opened or
+  /// after a write while no subscription or stream is active.
+  final bool blobStore;
+
+  /// Collects the timings returned by [Realm.metrics] (Android only).
+  final bool metrics;
+
+  /// Emits systrace sections for native calls and notifications, visible in
+  /// Perfetto captures (Android 4.3+, requires [metrics]).
+  final bool trace;
+
+  /// Compacts the realm file while opening it when the policy says so
+  /// (Android only, ignored for in-memory realms).
+  final CompactionPolicy compactOnLaunch;
+
+  /// Holds [Realm.update] calls back for up to this long and writes them in
+  /// one transaction, merged per object (Android only). Any other call, and
+  /// [Realm.flush], writes pending updates first.
+  final Duration writeBuffer;
+
+  const Configuration(
+      {this.inMemoryIdentifier,
+      this.encryptionKey,
+      this.workerThread = true,
+      this.blobStore = false,
+      this.metrics = false,
+      this.trace = false,
+      this.compactOnLaunch,
+      this.writeBuffer});
 
   Map<String, dynamic> toMap() => {
         'inMemoryIdentifier': inMemoryIdentifier,
-        'encryptionKey': encryptionKey
+        'encryptionKey': encryptionKey,
+        'workerThread': workerThread,
+        'blobStore': blobStore,
+        'metrics': metrics,
+        'trace': trace,
+        'compactOnLaunch': compactOnLaunch?.toMap(),
+        'writeBufferMillis': writeBuffer?.inMilliseconds
       };
 
   static const Configuration defaultConfiguration = const Configuration();
 }
+
+class CompactionPolicy {
+  /// Compacts when at least this share of the file is free space...
+  final double minFreeRatio;
+
+  /// ...or when at least this many bytes are free.
+  final int minFreeBytes;
+
+  /// Files smaller than this are never compacted.
+  final int minFileBytes;
+
+  const CompactionPolicy(
+      {this.minFreeRatio = 0.5, this.minFreeBytes, this.minFileBytes = 0});
+
+  Map<String, dynamic> toMap() => {
+        'minFreeRatio': minFreeRatio,
+        'minFreeBytes': minFreeBytes,
+        'minFileBytes': minFileBytes
+      };
+}
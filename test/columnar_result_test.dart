@@ -0,0 +1,233 @@
+import 'dart:convert';
+import 'dart:typed_data';
+
+import 'package:flutter_realm/flutter_realm.dart';
+import 'package:flutter_test/flutter_test.dart';
+
+void main() {
+  group('ColumnarResult', () {
+    test('decodes every column type', () {
+      final result = ColumnarResult(_encode(2, [
+        _Column('id', _int64, [1, -2]),
+        _Column('duration', _double, [30.5, 0.25]),
+        _Column('watched', _bool, [true, false]),
+        _Column('title', _string, ['One', 'Zwei ü']),
+        _Column('data', _binary, [
+          [1, 2, 3],
+          <int>[]
+        ]),
+        _Column('rate', _float, [29.97, 1.0]),
+        _Column('createdAt', _date, [1500000000000, 0]),
+        _Column('sizes', _intList, [
+          [1, 2],
+          <int>[]
+        ]),
+        _Column('tags', _stringList, [
+          ['a', 'b'],
+          ['b']
+        ]),
+      ]));
+
+      expect(result.length, 2);
+      expect(result.columnNames, [
+        'id',
+        'duration',
+        'watched',
+        'title',
+        'data',
+        'rate',
+        'createdAt',
+        'sizes',
+        'tags'
+      ]);
+
+      final first = result[0];
+      expect(first['id'], 1);
+      expect(first['duration'], 30.5);
+      expect(first['watched'], true);
+      expect(first['title'], 'One');
+      expect(first['data'], [1, 2, 3]);
+      expect(first['rate'], closeTo(29.97, 0.001));
+      expect(first['createdAt'],
+          DateTime.fromMillisecondsSinceEpoch(1500000000000));
+      expect(first['sizes'], [1, 2]);
+      expect(first['tags'], ['a', 'b']);
+
+      final second = result[1];
+      expect(second['id'], -2);
+      expect(second['title'], 'Zwei ü');
+      expect(second['data'], isEmpty);
+      expect(second['sizes'], isEmpty);
+      expect(second['tags'], ['b']);
+    });
+
+    test('leaves null values out of rows', () {
+      final result = ColumnarResult(_encode(3, [
+        _Column('title', _string, ['a', null, 'c']),
+        _Column('id', _int64, [null, 2, null]),
+        _Column('data', _binary, [
+          null,
+          [7],
+          null
+        ]),
+        _Column('tags', _stringList, [
+          null,
+          ['x', null],
+          null
+        ]),
+      ]));
+
+      expect(result[0], {'title': 'a'});
+      expect(result[1], {
+        'id': 2,
+        'data': [7],
+        'tags': ['x', null]
+      });
+      expect(result[2], {'title': 'c'});
+      expect(result.value(1, 'title'), isNull);
+      expect(result.value(2, 'title'), 'c');
+      expect(result.value(0, 'missing'), isNull);
+    });
+
+    test('handles an empty result', () {
+      final result = ColumnarResult(_encode(0, [_Column('id', _int64, [])]));
+      expect(result, isEmpty);
+      expect(result.columnNames, ['id']);
+    });
+
+    test('rejects other buffers and writes', () {
+      expect(() => ColumnarResult(Uint8List(16)), throwsFormatException);
+      final result = ColumnarResult(_encode(1, [
+        _Column('id', _int64, [1])
+      ]));
+      expect(() => result[1], throwsRangeError);
+      expect(() => result[0] = {}, throwsUnsupportedError);
+    });
+  });
+}
+
+const _int64 = 1;
+const _double = 2;
+const _bool = 3;
+const _string = 4;
+const _binary = 5;
+const _float = 6;
+const _date = 7;
+const _intList = 8;
+const _stringList = 9;
+
+class _Column {
+  final String name;
+  final int type;
+  final List values;
+
+  _Column(this.name, this.type, this.values);
+}
+
+/// Encodes [columns] the way ColumnarEncoder does on Android.
+Uint8List _encode(int rowCount, List<_Column> columns) {
+  final strings = <String, int>{};
+  final stringTable = _Writer();
+  int intern(String value) => strings.putIfAbsent(value, () {
+        final bytes = utf8.encode(value);
+        stringTable
+          ..int32(bytes.length)
+          ..bytes(bytes);
+        return strings.length;
+      });
+
+  final body = _Writer();
+  for (final column in columns) {
+    final presence = Uint8List((rowCount + 7) ~/ 8);
+    final values = _Writer();
+    final data = _Writer();
+    final variableLength = column.type == _binary ||
+        column.type == _intList ||
+        column.type == _stringList;
+    if (variableLength) values.int32(0);
+
+    for (var row = 0; row < rowCount; row++) {
+      final value = column.values[row];
+      if (value != null) presence[row >> 3] |= 1 << (row & 7);
+      switch (column.type) {
+        case _int64:
+        case _date:
+          values.int64(value ?? 0);
+          break;
+        case _double:
+          values.float64(value ?? 0.0);
+          break;
+        case _bool:
+          values.bytes([value == true ? 1 : 0]);
+          break;
+        case _string:
+          values.int32(value == null ? -1 : intern(value));
+          break;
+        case _float:
+          values.float32(value ?? 0.0);
+          break;
+        case _binary:
+          if (value != null) data.bytes(value);
+          values.int32(data.length);
+          break;
+        case _intList:
+          for (final element in value ?? const []) {
+            data.int64(element ?? 0);
+          }
+          values.int32(data.length ~/ 8);
+          break;
+        case _stringList:
+          for (final element in value ?? const []) {
+            data.int32(element == null ? -1 : intern(element));
+          }
+          values.int32(data.length ~/ 4);
+          break;
+      }
+    }
+
+    body
+      ..int32(intern(column.name))
+      ..int32(column.type)
+      ..int32(presence.length + values.length + data.length)
+      ..bytes(presence)
+      ..bytes(values.toBytes())
+      ..bytes(data.toBytes());
+  }
+
+  return (_Writer()
+        ..int32(0x31435246)
+        ..int32(rowCount)
+        ..int32(columns.length)
+        ..int32(strings.length)
+        ..bytes(stringTable.toBytes())
+        ..bytes(body.toBytes()))
+      .toBytes();
+}
+
+class _Writer {
+  final _builder = BytesBuilder();
+
+  int get length => _builder.length;
+
+  void bytes(List<int> bytes) => _builder.add(bytes);
+
+  void int32(int value) => _add(4, (data) => data.setInt32(0, value, _le));
+
+  void int64(int value) => _add(8, (data) => data.setInt64(0, value, _le));
+
+  void float32(double value) =>
+      _add(4, (data) => data.setFloat32(0, value, _le));
+
+  void float64(double value) =>
+      _add(8, (data) => data.setFloat64(0, value, _le));
+
+  void _add(int size, void Function(ByteData) write) {
+    final data = ByteData(size);
+    write(data);
+    _builder.add(data.buffer.asUint8List());
+  }
+
+  Uint8List toBytes() => _builder.toBytes();
+}
+
+const _le = Endian.little;